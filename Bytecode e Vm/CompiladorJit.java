@@ -0,0 +1,519 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Propósito: Segundo nível de execução da Mv: traduz um laço quente do Fragmento para bytecode da JVM e o carrega
+ * como classe oculta (MethodHandles.Lookup.defineHiddenClass), que o JIT da própria JVM passa a otimizar.
+ * Detalhes Chave: A região traduzida vai do destino do LOOP até logo depois dele. Cada posição da pilha da Mv vira uma
+ * variável local da JVM (long, double ou int para booleano) e cada global usada vira outra; os valores são lidos dos
+ * arrays de bits na entrada e escritos de volta em cada saída, que devolve o ip onde a Mv continua.
+ * O código é especializado nas etiquetas observadas quando o laço ficou quente; Compilado.entrar confere essas
+ * suposições a cada entrada e, se alguma falhar, devolve -1 e a Mv segue interpretando. Laços com instruções
+ * que o tradutor não conhece (cadenas, operações genéricas e as variantes _RAPIDO delas) nunca são compilados.
+ */
+final class CompiladorJit {
+
+    // Quantas vezes o LOOP precisa saltar para trás antes de o laço ser compilado.
+    static final int UMBRAL = 1000;
+
+    private static final String MATH = "java/lang/Math";
+    private static final String DOUBLE = "java/lang/Double";
+    private static final String ESTA = "CompiladorJit";
+    private static final int PRIMER_LOCAL = 3;
+
+    interface Lazo {
+        int ejecutar(long[] pila, long[] globales);
+    }
+
+    static final class Compilado {
+        private final Lazo lazo;
+        private final int[] locales;
+        private final byte[] etiquetasLocales;
+        private final int[] globales;
+        private final byte[] etiquetasGlobales;
+
+        private Compilado(Lazo lazo, int[] locales, byte[] etiquetasLocales, int[] globales, byte[] etiquetasGlobales) {
+            this.lazo = lazo;
+            this.locales = locales;
+            this.etiquetasLocales = etiquetasLocales;
+            this.globales = globales;
+            this.etiquetasGlobales = etiquetasGlobales;
+        }
+
+        int entrar(byte[] etiquetas, long[] bits, byte[] globalEtiquetas, long[] globalBits) {
+            for (int i = 0; i < locales.length; i++) {
+                if (etiquetas[locales[i]] != etiquetasLocales[i]) return -1;
+            }
+            for (int i = 0; i < globales.length; i++) {
+                if (globalEtiquetas[globales[i]] != etiquetasGlobales[i]) return -1;
+            }
+            return lazo.ejecutar(bits, globalBits);
+        }
+    }
+
+    private static final class NoCompilable extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        NoCompilable() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final Fragmento fragmento;
+    private final int inicio;
+    private final int fin;
+    private final int base;
+    private final byte[] etiquetas;
+    private final byte[] globalEtiquetas;
+
+    // Tipo da JVM ('J', 'D' ou 'Z') de cada posição da pilha e de cada global usada; 0 quando desconhecido.
+    private final char[] tipos;
+    private final Map<Integer, Integer> indiceGlobal = new HashMap<>();
+    private final List<Integer> globalesUsadas = new ArrayList<>();
+    private final List<Character> tiposGlobales = new ArrayList<>();
+    private final boolean[] localesEscritas;
+    private final List<Integer> globalesEscritas = new ArrayList<>();
+
+    private final Map<Integer, EscritorClase.Etiqueta> destinos = new HashMap<>();
+    private final Map<Integer, EscritorClase.Etiqueta> salidas = new HashMap<>();
+    private EscritorClase clase;
+    private EscritorClase.Codigo m;
+
+    private CompiladorJit(Fragmento fragmento, int inicio, int fin, int base, byte[] etiquetas, byte[] globalEtiquetas) {
+        this.fragmento = fragmento;
+        this.inicio = inicio;
+        this.fin = fin;
+        this.base = base;
+        this.etiquetas = etiquetas;
+        this.globalEtiquetas = globalEtiquetas;
+        this.tipos = new char[Math.max(fragmento.profundidadMaxima(), base) + 1];
+        this.localesEscritas = new boolean[base];
+    }
+
+    // Devolve null quando a região não pode ser compilada; a Mv então não tenta de novo.
+    static Compilado compilar(Fragmento fragmento, int inicio, int fin, int base, byte[] etiquetas, byte[] globalEtiquetas) {
+        try {
+            return new CompiladorJit(fragmento, inicio, fin, base, etiquetas, globalEtiquetas).compilar();
+        } catch (NoCompilable | IllegalStateException e) {
+            return null;
+        }
+    }
+
+    private Compilado compilar() {
+        // Slots locais vivos na entrada: o tipo vem das etiquetas observadas.
+        List<Integer> locales = new ArrayList<>();
+        int[] codigo = fragmento.codigo;
+        for (int ip = inicio; ip < fin; ip += 1 + OpCode.VALORES[codigo[ip]].operandos) {
+            OpCode op = OpCode.VALORES[codigo[ip]];
+            switch (op) {
+                case LEER_LOCAL: case ASIGNAR_LOCAL: case INCREMENTAR_LOCAL:
+                case SALTAR_SI_NO_MENOR_LOCAL: case SALTAR_SI_NO_MAYOR_LOCAL: {
+                    int slot = codigo[ip + 1];
+                    if (slot < base && tipos[slot] == 0) {
+                        tipos[slot] = tipoDe(etiquetas[slot]);
+                        locales.add(slot);
+                    }
+                    break;
+                }
+                case LEER_GLOBAL: case ASIGNAR_GLOBAL: case DEFINIR_GLOBAL: case INCREMENTAR_GLOBAL:
+                case SALTAR_SI_NO_MENOR_GLOBAL: case SALTAR_SI_NO_MAYOR_GLOBAL:
+                    global(codigo[ip + 1]);
+                    break;
+                default:
+                    break;
+            }
+            switch (op) {
+                case SALTAR: case SALTAR_SI_FALSO: case LOOP:
+                    destino(codigo[ip + 1]);
+                    break;
+                case SALTAR_SI_NO_MENOR_LOCAL: case SALTAR_SI_NO_MAYOR_LOCAL:
+                case SALTAR_SI_NO_MENOR_GLOBAL: case SALTAR_SI_NO_MAYOR_GLOBAL:
+                    destino(codigo[ip + 3]);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        clase = new EscritorClase("LazoJit", "java/lang/Object", ESTA + "$Lazo");
+        EscritorClase.Codigo constructor = clase.metodo(EscritorClase.ACC_PUBLIC, "<init>", "()V");
+        constructor.local(EscritorClase.ALOAD, 0);
+        constructor.invocar(EscritorClase.INVOKESPECIAL, clase.metodo("java/lang/Object", "<init>", "()V"));
+        constructor.op(EscritorClase.RETURN);
+        constructor.terminar(1, 1);
+
+        m = clase.metodo(EscritorClase.ACC_PUBLIC, "ejecutar", "([J[J)I");
+        for (int slot : locales) {
+            leerArray(1, slot, tipos[slot], posicion(slot));
+        }
+        for (int i = 0; i < globalesUsadas.size(); i++) {
+            leerArray(2, globalesUsadas.get(i), tiposGlobales.get(i), localGlobal(i));
+        }
+        traducir();
+        for (Map.Entry<Integer, EscritorClase.Etiqueta> salida : salidas.entrySet()) {
+            m.marcar(salida.getValue());
+            for (int slot = 0; slot < base; slot++) {
+                if (localesEscritas[slot]) escribirArray(1, slot, tipos[slot], posicion(slot));
+            }
+            for (int i : globalesEscritas) {
+                escribirArray(2, globalesUsadas.get(i), tiposGlobales.get(i), localGlobal(i));
+            }
+            m.entero(salida.getKey());
+            m.op(EscritorClase.IRETURN);
+        }
+        m.terminar(6, localGlobal(globalesUsadas.size()));
+
+        Lazo lazo = cargar(clase.bytes());
+        int[] slots = new int[locales.size()];
+        byte[] etiquetasLocales = new byte[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = locales.get(i);
+            etiquetasLocales[i] = etiquetas[slots[i]];
+        }
+        int[] globales = new int[globalesUsadas.size()];
+        byte[] etiquetasGlobales = new byte[globales.length];
+        for (int i = 0; i < globales.length; i++) {
+            globales[i] = globalesUsadas.get(i);
+            etiquetasGlobales[i] = globalEtiquetas[globales[i]];
+        }
+        return new Compilado(lazo, slots, etiquetasLocales, globales, etiquetasGlobales);
+    }
+
+    private void traducir() {
+        int[] codigo = fragmento.codigo;
+        int sp = base;
+        int ip = inicio;
+        while (ip < fin) {
+            EscritorClase.Etiqueta etiqueta = destinos.get(ip);
+            if (etiqueta != null) m.marcar(etiqueta);
+            OpCode op = OpCode.VALORES[codigo[ip]];
+            int a = op.operandos > 0 ? codigo[ip + 1] : 0;
+            switch (op) {
+                case CONSTANTE: {
+                    Object valor = fragmento.constantes.get(a);
+                    if (valor instanceof Long) {
+                        m.ldc2(clase.constanteLong((Long) valor));
+                        tipos[sp] = 'J';
+                    } else if (valor instanceof Double) {
+                        m.ldc2(clase.constanteDouble((Double) valor));
+                        tipos[sp] = 'D';
+                    } else if (valor instanceof Boolean) {
+                        m.entero((Boolean) valor ? 1 : 0);
+                        tipos[sp] = 'Z';
+                    } else {
+                        throw new NoCompilable();
+                    }
+                    guardar(tipos[sp], posicion(sp));
+                    sp++;
+                    break;
+                }
+                case SUMAR_ENT: binarioEntero(sp, "addExact"); sp--; break;
+                case RESTAR_ENT: binarioEntero(sp, "subtractExact"); sp--; break;
+                case MULTIPLICAR_ENT: binarioEntero(sp, "multiplyExact"); sp--; break;
+                case DIVIDIR_ENT:
+                    exigir(sp - 2, 'J');
+                    exigir(sp - 1, 'J');
+                    m.local(EscritorClase.LLOAD, posicion(sp - 2));
+                    m.local(EscritorClase.LLOAD, posicion(sp - 1));
+                    m.invocar(EscritorClase.INVOKESTATIC, clase.metodo("Mv", "dividirEnteros", "(JJ)J"));
+                    m.local(EscritorClase.LSTORE, posicion(sp - 2));
+                    sp--;
+                    break;
+                case NEGATIVO_ENT:
+                    exigir(sp - 1, 'J');
+                    m.local(EscritorClase.LLOAD, posicion(sp - 1));
+                    m.invocar(EscritorClase.INVOKESTATIC, clase.metodo(MATH, "negateExact", "(J)J"));
+                    m.local(EscritorClase.LSTORE, posicion(sp - 1));
+                    break;
+                case IGUAL_ENT: comparar(sp, 'J', EscritorClase.LCMP, EscritorClase.IFNE); sp--; break;
+                case MAYOR_ENT: comparar(sp, 'J', EscritorClase.LCMP, EscritorClase.IFLE); sp--; break;
+                case MENOR_ENT: comparar(sp, 'J', EscritorClase.LCMP, EscritorClase.IFGE); sp--; break;
+                case SUMAR_FLO: binarioFlotante(sp, EscritorClase.DADD); sp--; break;
+                case RESTAR_FLO: binarioFlotante(sp, EscritorClase.DSUB); sp--; break;
+                case MULTIPLICAR_FLO: binarioFlotante(sp, EscritorClase.DMUL); sp--; break;
+                case DIVIDIR_FLO: binarioFlotante(sp, EscritorClase.DDIV); sp--; break;
+                case NEGATIVO_FLO:
+                    exigir(sp - 1, 'D');
+                    m.local(EscritorClase.DLOAD, posicion(sp - 1));
+                    m.op(EscritorClase.DNEG);
+                    m.local(EscritorClase.DSTORE, posicion(sp - 1));
+                    break;
+                // Com NaN as comparações devem dar falso: DCMPG para "<" e DCMPL para ">" e "==".
+                case IGUAL_FLO: comparar(sp, 'D', EscritorClase.DCMPL, EscritorClase.IFNE); sp--; break;
+                case MAYOR_FLO: comparar(sp, 'D', EscritorClase.DCMPL, EscritorClase.IFLE); sp--; break;
+                case MENOR_FLO: comparar(sp, 'D', EscritorClase.DCMPG, EscritorClase.IFGE); sp--; break;
+                case ENTERO_A_FLOTANTE:
+                    exigir(sp - 1, 'J');
+                    m.local(EscritorClase.LLOAD, posicion(sp - 1));
+                    m.op(EscritorClase.L2D);
+                    m.local(EscritorClase.DSTORE, posicion(sp - 1));
+                    tipos[sp - 1] = 'D';
+                    break;
+                case NOT_BOOL:
+                    exigir(sp - 1, 'Z');
+                    m.local(EscritorClase.ILOAD, posicion(sp - 1));
+                    m.entero(1);
+                    m.op(EscritorClase.IXOR);
+                    m.local(EscritorClase.ISTORE, posicion(sp - 1));
+                    break;
+                case IMPRIMIR:
+                    sp--;
+                    cargar(tipos[sp], posicion(sp));
+                    m.invocar(EscritorClase.INVOKESTATIC, clase.metodo(ESTA, "imprimir", "(" + tipos[sp] + ")V"));
+                    break;
+                case LEER_LOCAL:
+                    copiar(tipos[a], posicion(a), sp);
+                    sp++;
+                    break;
+                case ASIGNAR_LOCAL:
+                    asignarLocal(a, sp - 1);
+                    break;
+                case LEER_GLOBAL: {
+                    int i = indiceGlobal.get(a);
+                    copiar(tiposGlobales.get(i), localGlobal(i), sp);
+                    sp++;
+                    break;
+                }
+                case ASIGNAR_GLOBAL:
+                    asignarGlobal(a, sp - 1);
+                    break;
+                case DEFINIR_GLOBAL:
+                    asignarGlobal(a, sp - 1);
+                    sp--;
+                    break;
+                case POP:
+                    sp--;
+                    break;
+                case SALTAR_SI_NO_MENOR_LOCAL:
+                case SALTAR_SI_NO_MAYOR_LOCAL:
+                    exigir(a, 'J');
+                    m.local(EscritorClase.LLOAD, posicion(a));
+                    saltarSiNo(op == OpCode.SALTAR_SI_NO_MENOR_LOCAL, codigo[ip + 2], codigo[ip + 3]);
+                    break;
+                case SALTAR_SI_NO_MENOR_GLOBAL:
+                case SALTAR_SI_NO_MAYOR_GLOBAL: {
+                    int i = indiceGlobal.get(a);
+                    if (tiposGlobales.get(i) != 'J') throw new NoCompilable();
+                    m.local(EscritorClase.LLOAD, localGlobal(i));
+                    saltarSiNo(op == OpCode.SALTAR_SI_NO_MENOR_GLOBAL, codigo[ip + 2], codigo[ip + 3]);
+                    break;
+                }
+                case INCREMENTAR_LOCAL:
+                    exigir(a, 'J');
+                    incrementar(posicion(a), codigo[ip + 2]);
+                    if (a < base) localesEscritas[a] = true;
+                    break;
+                case INCREMENTAR_GLOBAL: {
+                    int i = indiceGlobal.get(a);
+                    if (tiposGlobales.get(i) != 'J') throw new NoCompilable();
+                    incrementar(localGlobal(i), codigo[ip + 2]);
+                    if (!globalesEscritas.contains(i)) globalesEscritas.add(i);
+                    break;
+                }
+                case SALTAR_SI_FALSO:
+                    sp--;
+                    exigir(sp, 'Z');
+                    m.local(EscritorClase.ILOAD, posicion(sp));
+                    m.saltar(EscritorClase.IFEQ, etiqueta(a));
+                    break;
+                case SALTAR:
+                case LOOP:
+                    m.saltar(EscritorClase.GOTO, etiqueta(a));
+                    break;
+                default:
+                    throw new NoCompilable();
+            }
+            ip += 1 + op.operandos;
+        }
+    }
+
+    // --- Tradução das instruções ---
+
+    private void binarioEntero(int sp, String metodo) {
+        exigir(sp - 2, 'J');
+        exigir(sp - 1, 'J');
+        m.local(EscritorClase.LLOAD, posicion(sp - 2));
+        m.local(EscritorClase.LLOAD, posicion(sp - 1));
+        m.invocar(EscritorClase.INVOKESTATIC, clase.metodo(MATH, metodo, "(JJ)J"));
+        m.local(EscritorClase.LSTORE, posicion(sp - 2));
+    }
+
+    private void binarioFlotante(int sp, int instruccion) {
+        exigir(sp - 2, 'D');
+        exigir(sp - 1, 'D');
+        m.local(EscritorClase.DLOAD, posicion(sp - 2));
+        m.local(EscritorClase.DLOAD, posicion(sp - 1));
+        m.op(instruccion);
+        m.local(EscritorClase.DSTORE, posicion(sp - 2));
+    }
+
+    // Compara os dois valores do topo e deixa o booleano em sp - 2; saltoFalso é o IF que leva ao resultado falso.
+    private void comparar(int sp, char tipo, int comparacion, int saltoFalso) {
+        exigir(sp - 2, tipo);
+        exigir(sp - 1, tipo);
+        cargar(tipo, posicion(sp - 2));
+        cargar(tipo, posicion(sp - 1));
+        m.op(comparacion);
+        EscritorClase.Etiqueta falso = new EscritorClase.Etiqueta();
+        EscritorClase.Etiqueta listo = new EscritorClase.Etiqueta();
+        m.saltar(saltoFalso, falso);
+        m.entero(1);
+        m.saltar(EscritorClase.GOTO, listo);
+        m.marcar(falso);
+        m.entero(0);
+        m.marcar(listo);
+        m.local(EscritorClase.ISTORE, posicion(sp - 2));
+        tipos[sp - 2] = 'Z';
+    }
+
+    // Espera o valor da variável (long) já empilhado.
+    private void saltarSiNo(boolean menor, int constante, int destino) {
+        m.ldc2(clase.constanteLong(constanteEntera(constante)));
+        m.op(EscritorClase.LCMP);
+        m.saltar(menor ? EscritorClase.IFGE : EscritorClase.IFLE, etiqueta(destino));
+    }
+
+    private void incrementar(int local, int constante) {
+        m.local(EscritorClase.LLOAD, local);
+        m.ldc2(clase.constanteLong(constanteEntera(constante)));
+        m.invocar(EscritorClase.INVOKESTATIC, clase.metodo(MATH, "addExact", "(JJ)J"));
+        m.local(EscritorClase.LSTORE, local);
+    }
+
+    private void asignarLocal(int slot, int origen) {
+        char tipo = tipos[origen];
+        if (slot < base) {
+            if (tipos[slot] != tipo) throw new NoCompilable();
+            localesEscritas[slot] = true;
+        }
+        cargar(tipo, posicion(origen));
+        guardar(tipo, posicion(slot));
+        tipos[slot] = tipo;
+    }
+
+    private void asignarGlobal(int slot, int origen) {
+        int i = indiceGlobal.get(slot);
+        char tipo = tiposGlobales.get(i);
+        if (tipos[origen] != tipo) throw new NoCompilable();
+        cargar(tipo, posicion(origen));
+        guardar(tipo, localGlobal(i));
+        if (!globalesEscritas.contains(i)) globalesEscritas.add(i);
+    }
+
+    private void copiar(char tipo, int local, int sp) {
+        if (tipo == 0) throw new NoCompilable();
+        cargar(tipo, local);
+        guardar(tipo, posicion(sp));
+        tipos[sp] = tipo;
+    }
+
+    private void cargar(char tipo, int local) {
+        m.local(tipo == 'J' ? EscritorClase.LLOAD : tipo == 'D' ? EscritorClase.DLOAD : EscritorClase.ILOAD, local);
+    }
+
+    private void guardar(char tipo, int local) {
+        m.local(tipo == 'J' ? EscritorClase.LSTORE : tipo == 'D' ? EscritorClase.DSTORE : EscritorClase.ISTORE, local);
+    }
+
+    // Lê array[indice] (bits crus) e guarda na variável local convertida para o tipo.
+    private void leerArray(int array, int indice, char tipo, int local) {
+        m.local(EscritorClase.ALOAD, array);
+        m.entero(indice);
+        m.op(EscritorClase.LALOAD);
+        if (tipo == 'D') {
+            m.invocar(EscritorClase.INVOKESTATIC, clase.metodo(DOUBLE, "longBitsToDouble", "(J)D"));
+        } else if (tipo == 'Z') {
+            m.op(EscritorClase.L2I);
+        }
+        guardar(tipo, local);
+    }
+
+    private void escribirArray(int array, int indice, char tipo, int local) {
+        m.local(EscritorClase.ALOAD, array);
+        m.entero(indice);
+        cargar(tipo, local);
+        if (tipo == 'D') {
+            m.invocar(EscritorClase.INVOKESTATIC, clase.metodo(DOUBLE, "doubleToRawLongBits", "(D)J"));
+        } else if (tipo == 'Z') {
+            m.op(EscritorClase.I2L);
+        }
+        m.op(EscritorClase.LASTORE);
+    }
+
+    // --- Auxiliares ---
+
+    private void exigir(int posicion, char tipo) {
+        if (posicion < 0 || tipos[posicion] != tipo) throw new NoCompilable();
+    }
+
+    private long constanteEntera(int indice) {
+        Object valor = fragmento.constantes.get(indice);
+        if (!(valor instanceof Long)) throw new NoCompilable();
+        return (Long) valor;
+    }
+
+    private void global(int slot) {
+        if (indiceGlobal.containsKey(slot)) return;
+        char tipo = tipoDe(globalEtiquetas[slot]);
+        indiceGlobal.put(slot, globalesUsadas.size());
+        globalesUsadas.add(slot);
+        tiposGlobales.add(tipo);
+    }
+
+    private void destino(int ip) {
+        if (ip >= inicio && ip < fin) {
+            destinos.putIfAbsent(ip, new EscritorClase.Etiqueta());
+        }
+    }
+
+    private EscritorClase.Etiqueta etiqueta(int ip) {
+        EscritorClase.Etiqueta etiqueta = destinos.get(ip);
+        if (etiqueta != null) return etiqueta;
+        return salidas.computeIfAbsent(ip, k -> new EscritorClase.Etiqueta());
+    }
+
+    private static char tipoDe(byte etiqueta) {
+        switch (etiqueta) {
+            case Valor.ENTERO: return 'J';
+            case Valor.FLOTANTE: return 'D';
+            case Valor.BOOLEANO: return 'Z';
+            default: throw new NoCompilable();
+        }
+    }
+
+    // Variáveis locais da JVM: 0 = this, 1 = pila, 2 = globales; depois duas por posição da pilha e duas por global.
+    private int posicion(int p) {
+        return PRIMER_LOCAL + 2 * p;
+    }
+
+    private int localGlobal(int i) {
+        return PRIMER_LOCAL + 2 * tipos.length + 2 * i;
+    }
+
+    private static Lazo cargar(byte[] bytes) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            return (Lazo) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // --- Chamadas feitas pelo código gerado (mesma saída que Mv.imprimir) ---
+
+    static void imprimir(long valor) {
+        System.out.println(valor);
+    }
+
+    static void imprimir(double valor) {
+        System.out.println(valor);
+    }
+
+    static void imprimir(boolean valor) {
+        System.out.println(valor);
+    }
+}
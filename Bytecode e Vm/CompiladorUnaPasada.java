@@ -0,0 +1,566 @@
+/**
+ * Propósito: Compilador de uma passada só (--una-pasada), no estilo do clox: vai dos tokens direto às instruções do
+ * Fragmento, verificando os tipos durante a análise, sem construir Expr nem Sentencia.
+ * Detalhes Chave: Segue a gramática do AnalizadorSintactico (a mesma tabela PRECEDENCIAS, o mesmo ErrorDeAnalisis, as
+ * mesmas mensagens e a mesma recuperação por sincronizar()), as regras de tipo do AnalizadorSemantico (tipoBinario(),
+ * asignable(), a mesma TablaTipos) e escreve o mesmo bytecode do GeneradorByteCode, com os auxiliares estáticos dele,
+ * inclusive os que escolhem as superinstruções. Onde a passada única fica sabendo tarde demais algo que a árvore já
+ * sabia:
+ * - a conversão ENTERO_A_FLOTANTE do operando esquerdo só é decidida depois de ler o direito, e é inserida no fim do
+ *   código do esquerdo (Fragmento.insertar());
+ * - um nome seguido de '=' já foi escrito como leitura, que é descartada (Fragmento.recortar());
+ * - as superinstruções são trocadas no fim da condição ou da sentença, pela forma da expressão (forma);
+ * - o incremento do 'para' vem antes do corpo no texto e depois dele no código e na verificação: é lido uma vez só
+ *   pela sintaxe e compilado depois do corpo, voltando aos seus tokens (por isso os tokens são um BufferTokens).
+ * Os erros de sintaxe são reportados na hora. O primeiro erro de tipo fica guardado e só é reportado, por
+ * reportarErrorDeTipo(), se não houve erro de sintaxe, como na compilação em fases, em que a análise semântica nem
+ * começa depois de um erro de sintaxe e para no primeiro erro.
+ */
+class CompiladorUnaPasada {
+    // Formas de expressão que o GeneradorByteCode funde em superinstruções.
+    private static final int OTRA = 0;
+    private static final int VARIABLE = 1;        // um nome sozinho
+    private static final int LITERAL_ENTERO = 2;  // um número inteiro sozinho
+    private static final int COMPARACION = 3;     // variável ENTERO '<' ou '>' literal inteiro
+    private static final int SUMA = 4;            // variável ENTERO '+' ou '-' literal inteiro
+    private static final int INCREMENTO = 5;      // 'x = x + literal' ou 'x = x - literal', com x ENTERO
+
+    private final BufferTokens tokens;
+    private int actual = 0;
+    private Fragmento fragmento = new Fragmento();
+    private final GeneradorByteCode.CompilerScope scope = new GeneradorByteCode.CompilerScope();
+    private final GeneradorByteCode.PorSimbolo slotsGlobales = new GeneradorByteCode.PorSimbolo();
+
+    private final TablaTipos tipos = new TablaTipos();
+
+    // Forma da última expressão compilada: a variável (símbolo, slot e se é local), o índice da constante do literal
+    // e o operador.
+    private int forma = OTRA;
+    private int formaSimbolo;
+    private int formaSlot;
+    private boolean formaLocal;
+    private int formaConstante;
+    private TokenType formaOperador;
+
+    private Token tokenErrorDeTipo = null;
+    private String errorDeTipo = null;
+    private int erroresDeSintaxis = 0;
+    // Durante a primeira leitura do incremento de um 'para': sem verificar tipos e escrevendo num Fragmento à parte.
+    private boolean soloSintaxis = false;
+
+    CompiladorUnaPasada(BufferTokens tokens) {
+        this.tokens = tokens;
+    }
+
+    // O Fragmento só vale se não houve erro de sintaxe nem de tipo.
+    Fragmento compilar() {
+        tipos.iniciarAmbito();
+        while (!esFin()) {
+            declaracionOSentencia();
+        }
+        fragmento.escribir(OpCode.RETORNAR);
+        return fragmento;
+    }
+
+    // Reporta agora, por Lox, o primeiro erro de tipo; true se houve algum.
+    boolean reportarErrorDeTipo() {
+        if (errorDeTipo == null) return false;
+        Lox.error(tokenErrorDeTipo, errorDeTipo);
+        return true;
+    }
+
+    private void declaracionOSentencia() {
+        int abiertos = tipos.abiertos();
+        try {
+            sentencia();
+        } catch (AnalizadorSintactico.ErrorDeAnalisis error) {
+            // O código escrito já não serve; só os escopos abertos pela declaração precisam ser fechados.
+            while (tipos.abiertos() > abiertos) finalizarAmbito();
+            sincronizar();
+        }
+    }
+
+    private void sentencia() {
+        if (coincidirTipo()) {
+            declaracionDeTipo();
+        } else if (coincidir(TokenType.IMPRIMIR)) {
+            expresion(AnalizadorSintactico.ASIGNACION);
+            consumir(TokenType.PUNTO_Y_COMA, "Se esperaba ';' después del valor.");
+            fragmento.escribir(OpCode.IMPRIMIR);
+        } else if (coincidir(TokenType.SI)) {
+            sentenciaSi();
+        } else if (coincidir(TokenType.MIENTRAS)) {
+            sentenciaMientras();
+        } else if (coincidir(TokenType.PARA)) {
+            sentenciaPara();
+        } else if (coincidir(TokenType.LLAVE_IZQUIERDA)) {
+            bloque();
+        } else {
+            sentenciaDeExpresion();
+        }
+    }
+
+    private void declaracionDeTipo() {
+        int tokenTipo = actual - 1;
+        consumir(TokenType.IDENTIFICADOR, "Se esperaba un nombre de variable.");
+        int nombre = actual - 1;
+        Tipo tipoDeclarado = Tipo.desdeTipoToken(tokens.tipo(tokenTipo));
+
+        Tipo tipoInicializador = Tipo.NULO;
+        if (coincidir(TokenType.IGUAL)) {
+            tipoInicializador = expresion(AnalizadorSintactico.ASIGNACION);
+            GeneradorByteCode.convertir(fragmento, tipoInicializador, tipoDeclarado);
+        } else {
+            int idx = fragmento.agregarConstante(GeneradorByteCode.valorInicial(tipoDeclarado));
+            fragmento.escribir(OpCode.CONSTANTE, idx);
+        }
+        consumir(TokenType.PUNTO_Y_COMA, "Se esperaba ';' después de la declaración de la variable.");
+
+        if (tipoDeclarado == Tipo.INDEFINIDO) {
+            if (tipoInicializador == Tipo.NULO) {
+                errorDeTipo(tokenTipo, "Variables 'var' deben ser inicializadas.");
+            }
+            tipoDeclarado = tipoInicializador;
+        }
+        if (tipoInicializador != Tipo.NULO && !AnalizadorSemantico.asignable(tipoDeclarado, tipoInicializador)) {
+            errorDeTipo(nombre, "Error de tipo: No se puede asignar " +
+                    tipoInicializador + " a una variable de tipo " + tipoDeclarado + ".");
+        }
+
+        int simbolo = tokens.simbolo(nombre);
+        tipos.declarar(simbolo, tipoDeclarado);
+        if (scope.scopeDepth > 0) {
+            scope.addLocal(simbolo);
+        } else {
+            fragmento.escribir(OpCode.DEFINIR_GLOBAL, slotGlobal(simbolo));
+        }
+    }
+
+    private void sentenciaSi() {
+        int tokenSi = actual - 1;
+        consumir(TokenType.PARENTESIS_IZQUIERDO, "Se esperaba '(' después de 'si'.");
+        int thenJump = condicion(tokenSi, "La condición del 'si' debe ser un booleano.");
+        consumir(TokenType.PARENTESIS_DERECHO, "Se esperaba ')' después de la condición del if.");
+
+        sentencia();
+        int elseJump = fragmento.escribir(OpCode.SALTAR, -1);
+        fragmento.patch(thenJump, fragmento.tamanio());
+        if (coincidir(TokenType.SINO)) {
+            sentencia();
+        }
+        fragmento.patch(elseJump, fragmento.tamanio());
+    }
+
+    private void sentenciaMientras() {
+        int tokenMientras = actual - 1;
+        consumir(TokenType.PARENTESIS_IZQUIERDO, "Se esperaba '(' después de 'mientras'.");
+        int loopStart = fragmento.tamanio();
+        int exitJump = condicion(tokenMientras, "La condición del 'mientras' debe ser un booleano.");
+        consumir(TokenType.PARENTESIS_DERECHO, "Se esperaba ')' después de la condición del while.");
+
+        sentencia();
+        fragmento.escribir(OpCode.LOOP, loopStart);
+        fragmento.patch(exitJump, fragmento.tamanio());
+    }
+
+    // O mesmo código de AnalizadorSintactico.sentenciaPara(): '{ inicializador; mientras (condicion) { cuerpo;
+    // incremento; } }', com cada bloque só quando a parte dele existe.
+    private void sentenciaPara() {
+        int tokenPara = actual - 1;
+        consumir(TokenType.PARENTESIS_IZQUIERDO, "Se esperaba '(' después de 'para'.");
+
+        boolean conInicializador = !coincidir(TokenType.PUNTO_Y_COMA);
+        if (conInicializador) {
+            iniciarAmbito();
+            if (coincidirTipo()) {
+                declaracionDeTipo();
+            } else {
+                sentenciaDeExpresion();
+            }
+        }
+
+        int loopStart = fragmento.tamanio();
+        int exitJump;
+        if (!verificar(TokenType.PUNTO_Y_COMA)) {
+            exitJump = condicion(tokenPara, "La condición del 'mientras' debe ser un booleano.");
+        } else {
+            fragmento.escribir(OpCode.CONSTANTE, fragmento.agregarConstante(true));
+            exitJump = fragmento.escribir(OpCode.SALTAR_SI_FALSO, -1);
+        }
+        consumir(TokenType.PUNTO_Y_COMA, "Se esperaba ';' después de la condición del ciclo.");
+
+        int incremento = -1;
+        boolean incrementoValido = false;
+        if (!verificar(TokenType.PARENTESIS_DERECHO)) {
+            incremento = actual;
+            int errores = erroresDeSintaxis;
+            leerSinCompilar();
+            incrementoValido = erroresDeSintaxis == errores;
+        }
+        consumir(TokenType.PARENTESIS_DERECHO, "Se esperaba ')' después de las cláusulas del for.");
+
+        if (incremento >= 0) iniciarAmbito();
+        sentencia();
+        if (incremento >= 0) {
+            // Com erro, a leitura de novo repetiria as mensagens, e o Fragmento já não será executado.
+            if (incrementoValido) {
+                int despues = actual;
+                actual = incremento;
+                int inicio = fragmento.tamanio();
+                int profundidad = fragmento.profundidad();
+                expresion(AnalizadorSintactico.ASIGNACION);
+                descartarValor(inicio, profundidad);
+                actual = despues;
+            }
+            finalizarAmbito();
+        }
+        fragmento.escribir(OpCode.LOOP, loopStart);
+        fragmento.patch(exitJump, fragmento.tamanio());
+
+        if (conInicializador) finalizarAmbito();
+    }
+
+    private void leerSinCompilar() {
+        Fragmento real = fragmento;
+        fragmento = new Fragmento();
+        soloSintaxis = true;
+        try {
+            expresion(AnalizadorSintactico.ASIGNACION);
+        } finally {
+            fragmento = real;
+            soloSintaxis = false;
+        }
+    }
+
+    private void bloque() {
+        iniciarAmbito();
+        while (!verificar(TokenType.LLAVE_DERECHA) && !esFin()) {
+            declaracionOSentencia();
+        }
+        consumir(TokenType.LLAVE_DERECHA, "Se esperaba '}' después del bloque.");
+        finalizarAmbito();
+    }
+
+    private void sentenciaDeExpresion() {
+        int inicio = fragmento.tamanio();
+        int profundidad = fragmento.profundidad();
+        expresion(AnalizadorSintactico.ASIGNACION);
+        consumir(TokenType.PUNTO_Y_COMA, "Se esperaba ';' después de la expresión.");
+        descartarValor(inicio, profundidad);
+    }
+
+    // Fim de uma sentença de expressão, cujo código começa em inicio: tira o valor da pilha ou, para 'x = x + k',
+    // troca o código por INCREMENTAR_LOCAL/INCREMENTAR_GLOBAL (GeneradorByteCode.incrementar()).
+    private void descartarValor(int inicio, int profundidad) {
+        if (forma == INCREMENTO && errorDeTipo == null) {
+            Long delta = GeneradorByteCode.deltaDeIncremento(formaOperador,
+                    (Long) fragmento.constantes.get(formaConstante));
+            if (delta != null) {
+                // A constante do literal só era usada pelo código descartado.
+                fragmento.constantes.set(formaConstante, delta);
+                fragmento.recortar(inicio, profundidad);
+                GeneradorByteCode.escribirIncrementar(fragmento, formaLocal, formaSlot, formaConstante);
+                return;
+            }
+        }
+        fragmento.escribir(OpCode.POP);
+    }
+
+    // A condição de 'si', 'mientras' ou 'para', seguida do salto para quando ela é falsa; 'variable < constante' (ou
+    // '>') vira uma superinstrução, como em GeneradorByteCode.saltarSiFalso(). Retorna o offset do destino.
+    private int condicion(int token, String mensaje) {
+        int inicio = fragmento.tamanio();
+        int profundidad = fragmento.profundidad();
+        if (expresion(AnalizadorSintactico.ASIGNACION) != Tipo.BOOLEANO) {
+            errorDeTipo(token, mensaje);
+        }
+
+        if (forma == COMPARACION && errorDeTipo == null) {
+            fragmento.recortar(inicio, profundidad);
+            return GeneradorByteCode.escribirSaltarSiNo(fragmento, formaOperador, formaLocal, formaSlot, formaConstante);
+        }
+        return fragmento.escribir(OpCode.SALTAR_SI_FALSO, -1);
+    }
+
+    // Compila a expressão e retorna o tipo dela (null depois de um erro de tipo), deixando a forma em forma.
+    private Tipo expresion(int minima) {
+        int inicio = fragmento.tamanio();
+        int profundidad = fragmento.profundidad();
+        Tipo tipo;
+        TokenType operador = tokens.tipo(actual);
+        if (operador == TokenType.EXCLAMACION || operador == TokenType.MENOS) {
+            avanzar();
+            int token = actual - 1;
+            tipo = unario(token, expresion(AnalizadorSintactico.UNARIO));
+        } else {
+            tipo = primario();
+        }
+
+        while (true) {
+            operador = tokens.tipo(actual);
+            int precedencia = AnalizadorSintactico.PRECEDENCIAS[operador.ordinal()];
+            if (precedencia < minima || precedencia == AnalizadorSintactico.NINGUNA) return tipo;
+            avanzar();
+
+            if (operador == TokenType.PARENTESIS_IZQUIERDO) {
+                finalizarLlamada();
+                errorDeTipo(actual - 1, "No se puede llamar a un valor: el lenguaje no tiene funciones.");
+                forma = OTRA;
+                tipo = Tipo.NULO;
+            } else if (operador == TokenType.IGUAL) {
+                int igual = actual - 1;
+                if (forma != VARIABLE) {
+                    expresion(AnalizadorSintactico.ASIGNACION);
+                    error(igual, "Destino de asignación inválido.");
+                    forma = OTRA;
+                    return tipo;
+                }
+                return asignar(tipo, igual - 1, inicio, profundidad);
+            } else {
+                tipo = binario(tipo, actual - 1, precedencia);
+            }
+        }
+    }
+
+    // O nome, do tipo tipoVariable, já foi compilado como leitura, de inicio em diante.
+    private Tipo asignar(Tipo tipoVariable, int nombre, int inicio, int profundidad) {
+        int simbolo = formaSimbolo;
+        int slot = formaSlot;
+        boolean local = formaLocal;
+        fragmento.recortar(inicio, profundidad);
+
+        Tipo tipoValor = expresion(AnalizadorSintactico.ASIGNACION);
+        if (!AnalizadorSemantico.asignable(tipoVariable, tipoValor)) {
+            errorDeTipo(nombre, "Error de asignación: No se puede asignar un valor de tipo " +
+                    tipoValor + " a una variable de tipo " + tipoVariable + ".");
+        }
+        GeneradorByteCode.convertir(fragmento, tipoValor, tipoVariable);
+        fragmento.escribir(local ? OpCode.ASIGNAR_LOCAL : OpCode.ASIGNAR_GLOBAL, slot);
+
+        boolean incremento = forma == SUMA && formaSimbolo == simbolo && tipoVariable == Tipo.ENTERO;
+        forma = incremento ? INCREMENTO : OTRA;
+        return tipoVariable;
+    }
+
+    // O operando esquerdo, do tipo izquierda, já está compilado; o operador é o token anterior.
+    private Tipo binario(Tipo izquierda, int token, int precedencia) {
+        TokenType operador = tokens.tipo(token);
+        boolean variableEntera = forma == VARIABLE && izquierda == Tipo.ENTERO;
+        int simbolo = formaSimbolo;
+        int slot = formaSlot;
+        boolean local = formaLocal;
+        int finIzquierda = fragmento.tamanio();
+
+        Tipo derecha = expresion(precedencia + 1);
+        boolean literalEntero = forma == LITERAL_ENTERO;
+        Tipo tipo = AnalizadorSemantico.tipoBinario(operador, izquierda, derecha);
+        if (tipo == null) errorDeTipo(token, "Operación inválida entre " + izquierda + " y " + derecha);
+
+        Tipo numerico = GeneradorByteCode.tipoNumerico(izquierda, derecha);
+        if (izquierda == Tipo.ENTERO && numerico == Tipo.FLOTANTE) {
+            fragmento.insertar(finIzquierda, OpCode.ENTERO_A_FLOTANTE);
+        }
+        GeneradorByteCode.convertir(fragmento, derecha, numerico);
+        GeneradorByteCode.escribirBinario(fragmento, operador, numerico, tipo);
+
+        forma = OTRA;
+        if (variableEntera && literalEntero) {
+            if (GeneradorByteCode.comparacionFusionable(operador)) forma = COMPARACION;
+            if (GeneradorByteCode.incrementoFusionable(operador)) forma = SUMA;
+            formaSimbolo = simbolo;
+            formaSlot = slot;
+            formaLocal = local;
+            formaOperador = operador;
+        }
+        return tipo;
+    }
+
+    private Tipo unario(int token, Tipo derecha) {
+        forma = OTRA;
+        if (tokens.tipo(token) == TokenType.MENOS) {
+            Tipo numerico = GeneradorByteCode.tipoNumerico(derecha, derecha);
+            GeneradorByteCode.escribirNumerico(fragmento, numerico, OpCode.NEGATIVO_ENT, OpCode.NEGATIVO_FLO, OpCode.NEGATIVO);
+            if (numerico != null) return derecha;
+            errorDeTipo(token, "El operador '-' solo se puede usar con números.");
+            return null;
+        }
+        if (derecha == Tipo.BOOLEANO) {
+            GeneradorByteCode.negar(fragmento, Tipo.BOOLEANO);
+            return Tipo.BOOLEANO;
+        }
+        GeneradorByteCode.negar(fragmento, null);
+        errorDeTipo(token, "El operador '!' solo se puede usar con booleanos.");
+        return null;
+    }
+
+    private void finalizarLlamada() {
+        int argumentos = 0;
+        if (!verificar(TokenType.PARENTESIS_DERECHO)) {
+            do {
+                if (argumentos >= 255) {
+                    error(actual, "No se pueden tener más de 255 argumentos.");
+                }
+                expresion(AnalizadorSintactico.ASIGNACION);
+                argumentos++;
+            } while (coincidir(TokenType.COMA));
+        }
+        consumir(TokenType.PARENTESIS_DERECHO, "Se esperaba ')' después de los argumentos.");
+    }
+
+    private Tipo primario() {
+        switch (tokens.tipo(actual)) {
+            case FALSO:
+                avanzar();
+                return literal(false);
+            case VERDADERO:
+                avanzar();
+                return literal(true);
+            case NULO:
+                avanzar();
+                return literal(null);
+            case NUMERO:
+            case CADENA:
+                avanzar();
+                return literal(tokens.literal(actual - 1));
+            case IDENTIFICADOR:
+                avanzar();
+                return variable(actual - 1);
+            case PARENTESIS_IZQUIERDO:
+                avanzar();
+                Tipo tipo = expresion(AnalizadorSintactico.ASIGNACION);
+                consumir(TokenType.PARENTESIS_DERECHO, "Se esperaba ')' después de la expresión.");
+                forma = OTRA;
+                return tipo;
+            default:
+                throw error(actual, "Se esperaba una expresión.");
+        }
+    }
+
+    private Tipo literal(Object valor) {
+        int idx = fragmento.agregarConstante(valor);
+        fragmento.escribir(OpCode.CONSTANTE, idx);
+        forma = valor instanceof Long ? LITERAL_ENTERO : OTRA;
+        formaConstante = idx;
+        return AnalizadorSemantico.tipoLiteral(valor);
+    }
+
+    private Tipo variable(int nombre) {
+        int simbolo = tokens.simbolo(nombre);
+        Tipo tipo = tipos.visible(simbolo);
+        if (tipo == null) errorDeTipo(nombre, "Variable '" + tokens.lexema(nombre) + "' no definida.");
+
+        int slot = scope.resolveLocal(simbolo);
+        boolean local = slot != -1;
+        if (!local) slot = slotGlobal(simbolo);
+        fragmento.escribir(local ? OpCode.LEER_LOCAL : OpCode.LEER_GLOBAL, slot);
+
+        forma = VARIABLE;
+        formaSimbolo = simbolo;
+        formaSlot = slot;
+        formaLocal = local;
+        return tipo;
+    }
+
+    private int slotGlobal(int simbolo) {
+        if (soloSintaxis) return 0;
+        int slot = slotsGlobales.obtener(simbolo);
+        if (slot == -1) {
+            slot = fragmento.agregarGlobal(tokens.simbolos().nombre(simbolo));
+            slotsGlobales.poner(simbolo, slot);
+        }
+        return slot;
+    }
+
+    private void iniciarAmbito() {
+        tipos.iniciarAmbito();
+        scope.beginScope();
+    }
+
+    private void finalizarAmbito() {
+        tipos.finalizarAmbito();
+        int localsRemoved = scope.endScope();
+        for (int i = 0; i < localsRemoved; i++) {
+            fragmento.escribir(OpCode.POP);
+        }
+    }
+
+    // Guarda o primeiro erro de tipo; os seguintes seriam erros que a análise semântica não chegaria a ver.
+    private void errorDeTipo(int token, String mensaje) {
+        if (soloSintaxis || errorDeTipo != null) return;
+        tokenErrorDeTipo = tokens.token(token);
+        errorDeTipo = mensaje;
+    }
+
+    private boolean coincidir(TokenType tipo) {
+        if (verificar(tipo)) {
+            avanzar();
+            return true;
+        }
+        return false;
+    }
+
+    // Palavras que começam uma declaração de variável.
+    private boolean coincidirTipo() {
+        switch (tokens.tipo(actual)) {
+            case VAR:
+            case ENTERO:
+            case FLOTANTE:
+            case BOOLEANO:
+            case CADENA:
+                avanzar();
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void consumir(TokenType tipo, String mensaje) {
+        if (verificar(tipo)) {
+            avanzar();
+            return;
+        }
+        throw error(actual, mensaje);
+    }
+
+    private AnalizadorSintactico.ErrorDeAnalisis error(int token, String mensaje) {
+        erroresDeSintaxis++;
+        Lox.error(tokens.token(token), mensaje);
+        return new AnalizadorSintactico.ErrorDeAnalisis();
+    }
+
+    private void sincronizar() {
+        avanzar();
+        while (!esFin()) {
+            if (tokens.tipo(actual - 1) == TokenType.PUNTO_Y_COMA) return;
+            switch (tokens.tipo(actual)) {
+                case ENTERO:
+                case FLOTANTE:
+                case BOOLEANO:
+                case PARA:
+                case SI:
+                case MIENTRAS:
+                case IMPRIMIR:
+                case RETORNAR:
+                case CLASE:
+                case FUN:
+                case VAR:
+                case CADENA:
+                    return;
+            }
+            avanzar();
+        }
+    }
+
+    private boolean verificar(TokenType tipo) {
+        if (esFin()) return false;
+        return tokens.tipo(actual) == tipo;
+    }
+
+    private void avanzar() {
+        if (!esFin()) actual++;
+    }
+
+    private boolean esFin() {
+        return tokens.tipo(actual) == TokenType.FIN_DE_ARCHIVO;
+    }
+}
@@ -0,0 +1,285 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Propósito: Escritor mínimo de arquivos .class usado pelo CompiladorJit para gerar classes em tempo de execução.
+ * Detalhes Chave: Mantém o pool de constantes (com deduplicação) e monta o corpo dos métodos através da classe aninhada
+ * Codigo, que conhece só as instruções da JVM que o JIT emite e resolve saltos com Etiqueta. Gera a versão 49 do
+ * formato, que dispensa a tabela StackMapTable: a JVM verifica essas classes por inferência de tipos.
+ */
+final class EscritorClase {
+
+    private static final int VERSION = 49;
+
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    // Instruções da JVM usadas pelo JIT.
+    static final int ICONST_0 = 0x03, ICONST_1 = 0x04, BIPUSH = 0x10, SIPUSH = 0x11, LDC_W = 0x13, LDC2_W = 0x14;
+    static final int ILOAD = 0x15, LLOAD = 0x16, DLOAD = 0x18, ALOAD = 0x19, LALOAD = 0x2f;
+    static final int ISTORE = 0x36, LSTORE = 0x37, DSTORE = 0x39, LASTORE = 0x50;
+    static final int DADD = 0x63, DSUB = 0x67, DMUL = 0x6b, DDIV = 0x6f, DNEG = 0x77;
+    static final int IXOR = 0x82, I2L = 0x85, L2I = 0x88, L2D = 0x8a;
+    static final int LCMP = 0x94, DCMPL = 0x97, DCMPG = 0x98;
+    static final int IFEQ = 0x99, IFNE = 0x9a, IFGE = 0x9c, IFLE = 0x9e, GOTO = 0xa7;
+    static final int IRETURN = 0xac, RETURN = 0xb1;
+    static final int INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8;
+    static final int WIDE = 0xc4;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map<String, Integer> entradas = new HashMap<>();
+    private int siguienteEntrada = 1;
+
+    private final int esta;
+    private final int superclase;
+    private final int[] interfaces;
+    private final List<byte[]> metodos = new ArrayList<>();
+
+    EscritorClase(String nombre, String superclase, String... interfaces) {
+        this.esta = clase(nombre);
+        this.superclase = clase(superclase);
+        this.interfaces = new int[interfaces.length];
+        for (int i = 0; i < interfaces.length; i++) {
+            this.interfaces[i] = clase(interfaces[i]);
+        }
+    }
+
+    // --- Pool de constantes ---
+
+    int utf8(String valor) {
+        return entrada("U" + valor, 1, () -> {
+            pool.writeByte(1);
+            pool.writeUTF(valor);
+        });
+    }
+
+    int clase(String nombreInterno) {
+        int nombre = utf8(nombreInterno);
+        return entrada("C" + nombreInterno, 1, () -> {
+            pool.writeByte(7);
+            pool.writeShort(nombre);
+        });
+    }
+
+    int constanteEntero(int valor) {
+        return entrada("I" + valor, 1, () -> {
+            pool.writeByte(3);
+            pool.writeInt(valor);
+        });
+    }
+
+    int constanteLong(long valor) {
+        return entrada("J" + valor, 2, () -> {
+            pool.writeByte(5);
+            pool.writeLong(valor);
+        });
+    }
+
+    int constanteDouble(double valor) {
+        return entrada("D" + Double.doubleToRawLongBits(valor), 2, () -> {
+            pool.writeByte(6);
+            pool.writeDouble(valor);
+        });
+    }
+
+    int metodo(String clase, String nombre, String descriptor) {
+        int c = clase(clase);
+        int nt = nombreYTipo(nombre, descriptor);
+        return entrada("M" + clase + "." + nombre + descriptor, 1, () -> {
+            pool.writeByte(10);
+            pool.writeShort(c);
+            pool.writeShort(nt);
+        });
+    }
+
+    private int nombreYTipo(String nombre, String descriptor) {
+        int n = utf8(nombre);
+        int d = utf8(descriptor);
+        return entrada("N" + nombre + descriptor, 1, () -> {
+            pool.writeByte(12);
+            pool.writeShort(n);
+            pool.writeShort(d);
+        });
+    }
+
+    private interface Escritura {
+        void escribir() throws IOException;
+    }
+
+    private int entrada(String clave, int ancho, Escritura escritura) {
+        Integer indice = entradas.get(clave);
+        if (indice != null) return indice;
+        try {
+            escritura.escribir();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        int nuevo = siguienteEntrada;
+        siguienteEntrada += ancho;
+        entradas.put(clave, nuevo);
+        return nuevo;
+    }
+
+    // --- Métodos ---
+
+    Codigo metodo(int acceso, String nombre, String descriptor) {
+        return new Codigo(acceso, utf8(nombre), utf8(descriptor));
+    }
+
+    byte[] bytes() {
+        int code = utf8("Code");
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(salida)) {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(siguienteEntrada);
+            pool.flush();
+            poolBytes.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(esta);
+            out.writeShort(superclase);
+            out.writeShort(interfaces.length);
+            for (int i : interfaces) out.writeShort(i);
+            out.writeShort(0);
+            out.writeShort(metodos.size());
+            for (byte[] metodo : metodos) {
+                out.write(metodo, 0, 8);
+                out.writeShort(code);
+                out.write(metodo, 8, metodo.length - 8);
+            }
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return salida.toByteArray();
+    }
+
+    static final class Etiqueta {
+        private int posicion = -1;
+        private final List<int[]> pendientes = new ArrayList<>();
+    }
+
+    /** Corpo de um método; os saltos usam deslocamentos de 16 bits, então o corpo não pode passar de 32 KB. */
+    final class Codigo {
+        private final int acceso;
+        private final int nombre;
+        private final int descriptor;
+        private byte[] bytes = new byte[256];
+        private int tamanio = 0;
+
+        private Codigo(int acceso, int nombre, int descriptor) {
+            this.acceso = acceso;
+            this.nombre = nombre;
+            this.descriptor = descriptor;
+        }
+
+        int tamanio() {
+            return tamanio;
+        }
+
+        void op(int opcode) {
+            u1(opcode);
+        }
+
+        void entero(int valor) {
+            if (valor == 0) {
+                u1(ICONST_0);
+            } else if (valor == 1) {
+                u1(ICONST_1);
+            } else if (valor >= Byte.MIN_VALUE && valor <= Byte.MAX_VALUE) {
+                u1(BIPUSH);
+                u1(valor);
+            } else if (valor >= Short.MIN_VALUE && valor <= Short.MAX_VALUE) {
+                u1(SIPUSH);
+                u2(valor);
+            } else {
+                u1(LDC_W);
+                u2(constanteEntero(valor));
+            }
+        }
+
+        void ldc2(int indice) {
+            u1(LDC2_W);
+            u2(indice);
+        }
+
+        void local(int opcode, int indice) {
+            if (indice > 255) {
+                u1(WIDE);
+                u1(opcode);
+                u2(indice);
+            } else {
+                u1(opcode);
+                u1(indice);
+            }
+        }
+
+        void invocar(int opcode, int metodo) {
+            u1(opcode);
+            u2(metodo);
+        }
+
+        void saltar(int opcode, Etiqueta destino) {
+            int origen = tamanio;
+            u1(opcode);
+            if (destino.posicion >= 0) {
+                u2(destino.posicion - origen);
+            } else {
+                destino.pendientes.add(new int[]{origen, tamanio});
+                u2(0);
+            }
+        }
+
+        void marcar(Etiqueta etiqueta) {
+            etiqueta.posicion = tamanio;
+            for (int[] p : etiqueta.pendientes) {
+                int delta = tamanio - p[0];
+                bytes[p[1]] = (byte) (delta >> 8);
+                bytes[p[1] + 1] = (byte) delta;
+            }
+            etiqueta.pendientes.clear();
+        }
+
+        void terminar(int maxPila, int maxLocales) {
+            if (tamanio > Short.MAX_VALUE) {
+                throw new IllegalStateException("Método gerado grande demais para saltos de 16 bits.");
+            }
+            ByteArrayOutputStream salida = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(salida)) {
+                out.writeShort(acceso);
+                out.writeShort(nombre);
+                out.writeShort(descriptor);
+                out.writeShort(1);
+                // (o índice de "Code" é inserido por EscritorClase.bytes())
+                out.writeInt(12 + tamanio);
+                out.writeShort(maxPila);
+                out.writeShort(maxLocales);
+                out.writeInt(tamanio);
+                out.write(bytes, 0, tamanio);
+                out.writeShort(0);
+                out.writeShort(0);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            metodos.add(salida.toByteArray());
+        }
+
+        private void u1(int valor) {
+            if (tamanio == bytes.length) bytes = java.util.Arrays.copyOf(bytes, bytes.length * 2);
+            bytes[tamanio++] = (byte) valor;
+        }
+
+        private void u2(int valor) {
+            u1(valor >> 8);
+            u1(valor);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Propósito: Armazena o código gerado pelo GeneradorRegistros para a MvRegistros: instruções de três endereços,
+ * constantes e nomes das globais.
+ * Detalhes Chave: Como o Fragmento, o código é um único int[] com o ordinal do OpCodeRegistro seguido dos operandos.
+ * Durante a geração, globais e constantes são referenciadas com as marcas GLOBAL e CONSTANTE; enlazar() as troca
+ * pelo registrador definitivo, depois dos locais e temporários: [locais e temporários | globais | constantes].
+ * Inclui imprimirDisassembly() para visualização e depuração.
+ */
+public class FragmentoRegistros {
+    static final int GLOBAL = 1 << 24;
+    static final int CONSTANTE = 2 << 24;
+    private static final int MARCAS = 3 << 24;
+
+    int[] codigo = new int[64];
+    int tamanio = 0;
+    List<Object> constantes = new ArrayList<>();
+    List<String> globales = new ArrayList<>();
+    // Registradores de locais e temporários; globais e constantes vêm em seguida.
+    int registros = 0;
+
+    // Retornam o offset do último operando, que é o que patch() espera receber.
+    public int escribir(OpCodeRegistro op, int... operandos) {
+        agregar(op.ordinal());
+        for (int operando : operandos) agregar(operando);
+        return tamanio - 1;
+    }
+
+    public int agregarConstante(Object valor) {
+        constantes.add(valor);
+        return CONSTANTE | (constantes.size() - 1);
+    }
+
+    public int agregarGlobal(String nombre) {
+        globales.add(nombre);
+        return GLOBAL | (globales.size() - 1);
+    }
+
+    public void patch(int offset, int salto) {
+        codigo[offset] = salto;
+    }
+
+    public int tamanio() {
+        return tamanio;
+    }
+
+    public int totalRegistros() {
+        return registros + globales.size() + constantes.size();
+    }
+
+    int primeraGlobal() {
+        return registros;
+    }
+
+    int primeraConstante() {
+        return registros + globales.size();
+    }
+
+    // Chamado uma vez, ao fim da geração, com o número de registradores de locais e temporários.
+    void enlazar(int registros) {
+        this.registros = registros;
+        int i = 0;
+        while (i < tamanio) {
+            OpCodeRegistro op = OpCodeRegistro.VALORES[codigo[i]];
+            for (int k = 1; k <= op.registros; k++) {
+                int operando = codigo[i + k];
+                int marca = operando & MARCAS;
+                if (marca == GLOBAL) codigo[i + k] = primeraGlobal() + (operando & ~MARCAS);
+                else if (marca == CONSTANTE) codigo[i + k] = primeraConstante() + (operando & ~MARCAS);
+            }
+            i += 1 + op.operandos;
+        }
+    }
+
+    private void agregar(int palabra) {
+        if (tamanio == codigo.length) {
+            codigo = Arrays.copyOf(codigo, codigo.length * 2);
+        }
+        codigo[tamanio++] = palabra;
+    }
+
+
+    public void imprimirDisassembly() {
+        System.out.println("=== ByteCode (registros) ===");
+
+        int i = 0;
+        while (i < tamanio) {
+            OpCodeRegistro op = OpCodeRegistro.VALORES[codigo[i]];
+
+            System.out.printf("%04d: ", i);
+            System.out.printf("%-26s", op);
+
+            for (int k = 1; k <= op.operandos; k++) {
+                if (k > 1) System.out.print(" ");
+                if (k <= op.registros) System.out.print(describirRegistro(codigo[i + k]));
+                else System.out.printf("-> %04d", codigo[i + k]);
+            }
+            System.out.println();
+            i += 1 + op.operandos;
+        }
+        System.out.println("===================");
+    }
+
+    private String describirRegistro(int r) {
+        if (r >= primeraConstante()) {
+            Object valor = constantes.get(r - primeraConstante());
+            if (valor instanceof String) valor = "\"" + valor + "\"";
+            return String.format("<%s>", valor);
+        }
+        if (r >= primeraGlobal()) return String.format("<%s>", globales.get(r - primeraGlobal()));
+        return "r" + r;
+    }
+
+}
@@ -1,4 +1,5 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -6,19 +7,25 @@ import java.util.List;
  * as instruções de bytecode para o Fragmento.
  * Detalhes Chave: Implementa as interfaces Expr.Visitante<Void> e Sentencia.Visitante<Void>.
  * Gerencia o escopo de variáveis locais e globais usando a classe aninhada CompilerScope.
- * É responsável por criar os jumps para as sentenças de controle de fluxo (Si, Mientras).
+ * Cada nome global recebe um slot denso em tempo de compilação (slotsGlobales), usado diretamente pela Mv.
+ * Locais e globais são resolvidos pelo símbolo do nome (Token.simbolo), sem comparar nem hashear Strings.
+ * É responsável por criar os jumps para as sentenças de controle de fluxo (Si, Mientras), fundindo os padrões
+ * mais comuns de laço (comparar com constante e saltar, somar constante a uma variável) em superinstruções.
+ * generar(ArbolPlano) percorre com o mesmo visitante cada raiz da AST plana remontada. generar(Sentencia) e terminar() permitem gerar o código uma declaração por vez, e generarSegmento()
+ * gera cada declaração num Fragmento próprio (execução em fluxo).
  */
 
 public class GeneradorByteCode implements Expr.Visitante<Void>, Sentencia.Visitante<Void> {
-    private final Fragmento fragmento; 
+    private Fragmento fragmento; // Renomeado de Chunk para Fragmento
     private CompilerScope scope = new CompilerScope();
+    private final PorSimbolo slotsGlobales = new PorSimbolo();
 
-    private static class CompilerScope {
+    static class CompilerScope {
         private static class Local {
-            String nombre;
+            int simbolo;
             int profundidad;
-            Local(String nombre, int profundidad) {
-                this.nombre = nombre;
+            Local(int simbolo, int profundidad) {
+                this.simbolo = simbolo;
                 this.profundidad = profundidad;
             }
         }
@@ -37,12 +44,12 @@ public class GeneradorByteCode implements Expr.Visitante<Void>, Sentencia.Visita
             return localsRemoved;
         }
 
-        void addLocal(String name) {
-            locals.add(new Local(name, scopeDepth));
+        void addLocal(int simbolo) {
+            locals.add(new Local(simbolo, scopeDepth));
         }
-        int resolveLocal(String name) {
+        int resolveLocal(int simbolo) {
             for (int i = locals.size() - 1; i >= 0; i--) {
-                if (locals.get(i).nombre.equals(name)) {
+                if (locals.get(i).simbolo == simbolo) {
                     return i;
                 }
             }
@@ -50,6 +57,24 @@ public class GeneradorByteCode implements Expr.Visitante<Void>, Sentencia.Visita
         }
     }
 
+    // Um inteiro por símbolo da TablaSimbolos (slot global, registrador...), -1 para os símbolos sem valor.
+    static class PorSimbolo {
+        private int[] valores = new int[0];
+
+        int obtener(int simbolo) {
+            return simbolo < valores.length ? valores[simbolo] : -1;
+        }
+
+        void poner(int simbolo, int valor) {
+            if (simbolo >= valores.length) {
+                int anterior = valores.length;
+                valores = Arrays.copyOf(valores, Math.max(simbolo + 1, anterior * 2));
+                Arrays.fill(valores, anterior, valores.length, -1);
+            }
+            valores[simbolo] = valor;
+        }
+    }
+
     public GeneradorByteCode(Fragmento fragmento) {
         this.fragmento = fragmento;
     }
@@ -58,7 +83,33 @@ public class GeneradorByteCode implements Expr.Visitante<Void>, Sentencia.Visita
         for (Sentencia sent : sentencias) {
             ejecutar(sent);
         }
-        fragmento.escrever(OpCode.RETORNAR);
+        terminar();
+    }
+
+    // Uma declaração de nível superior por vez; terminar() fecha o código depois da última.
+    public void generar(Sentencia sentencia) {
+        ejecutar(sentencia);
+    }
+
+    public void terminar() {
+        fragmento.escribir(OpCode.RETORNAR);
+    }
+
+    // A declaração sozinha, num Fragmento novo que continua os slots globais e o escopo dos anteriores.
+    public Fragmento generarSegmento(Sentencia sentencia) {
+        fragmento = fragmento.siguiente();
+        ejecutar(sentencia);
+        terminar();
+        return fragmento;
+    }
+
+    private int slotGlobal(Token nombre) {
+        int slot = slotsGlobales.obtener(nombre.simbolo);
+        if (slot == -1) {
+            slot = fragmento.agregarGlobal(nombre.lexema);
+            slotsGlobales.poner(nombre.simbolo, slot);
+        }
+        return slot;
     }
 
     private void ejecutar(Sentencia sentencia) {
@@ -76,74 +127,79 @@ public class GeneradorByteCode implements Expr.Visitante<Void>, Sentencia.Visita
 
         if (sent.inicializador != null) {
             avaliar(sent.inicializador);
+            convertir(fragmento, sent.inicializador.tipo, Tipo.desdeToken(sent.tipo));
         } else {
 
-            int idx = fragmento.agregarConstante(null);
-            fragmento.escrever(OpCode.CONSTANTE, idx);
+            int idx = fragmento.agregarConstante(valorInicial(Tipo.desdeToken(sent.tipo)));
+            fragmento.escribir(OpCode.CONSTANTE, idx);
         }
 
 
         if (scope.scopeDepth > 0) {
-            scope.addLocal(sent.nombre.lexema);
+            scope.addLocal(sent.nombre.simbolo);
         } else {
-            int nameIdx = fragmento.agregarConstante(sent.nombre.lexema);
-            fragmento.escrever(OpCode.DEFINIR_GLOBAL, nameIdx);
+            fragmento.escribir(OpCode.DEFINIR_GLOBAL, slotGlobal(sent.nombre));
         }
         return null;
     }
 
+    // As instruções tipadas da Mv leem os bits sem olhar a etiqueta, então uma variável numérica ou booleana
+    // declarada sem inicializador começa com o zero do seu tipo em vez de nulo.
+    static Object valorInicial(Tipo tipo) {
+        if (tipo == Tipo.ENTERO) return 0L;
+        if (tipo == Tipo.FLOTANTE) return 0.0;
+        if (tipo == Tipo.BOOLEANO) return false;
+        return null;
+    }
+
     @Override
     public Void visitarSentenciaBloque(Sentencia.Bloque sent) {
         scope.beginScope();
         for (Sentencia s : sent.sentencias) {
             ejecutar(s);
         }
+
         int localsRemoved = scope.endScope();
 
         for (int i = 0; i < localsRemoved; i++) {
-            fragmento.escrever(OpCode.POP);
+            fragmento.escribir(OpCode.POP);
         }
         return null;
     }
 
     @Override
     public Void visitarSentenciaSi(Sentencia.Si sent) {
-        avaliar(sent.condicion);
-
-
-        int thenJump = fragmento.escrever(OpCode.SALTAR_SI_FALSO, -1);
+        int thenJump = saltarSiFalso(sent.condicion);
 
 
         ejecutar(sent.ramaSi);
 
-        int elseJump = fragmento.escrever(OpCode.SALTAR, -1);
+        int elseJump = fragmento.escribir(OpCode.SALTAR, -1);
 
 
-        fragmento.patch(thenJump, fragmento.codigo.size());
+        fragmento.patch(thenJump, fragmento.tamanio());
 
         if (sent.ramaSino != null) {
             ejecutar(sent.ramaSino);
         }
 
 
-        fragmento.patch(elseJump, fragmento.codigo.size());
+        fragmento.patch(elseJump, fragmento.tamanio());
 
         return null;
     }
 
     @Override
     public Void visitarSentenciaMientras(Sentencia.Mientras sent) {
-        int loopStart = fragmento.codigo.size();
-
-        avaliar(sent.condicion);
+        int loopStart = fragmento.tamanio();
 
-        int exitJump = fragmento.escrever(OpCode.SALTAR_SI_FALSO, -1);
+        int exitJump = saltarSiFalso(sent.condicion);
 
         ejecutar(sent.cuerpo);
 
-        fragmento.escrever(OpCode.LOOP, loopStart);
+        fragmento.escribir(OpCode.LOOP, loopStart);
 
-        fragmento.patch(exitJump, fragmento.codigo.size());
+        fragmento.patch(exitJump, fragmento.tamanio());
 
         return null;
     }
@@ -151,54 +207,181 @@ public class GeneradorByteCode implements Expr.Visitante<Void>, Sentencia.Visita
     @Override
     public Void visitarSentenciaImprimir(Sentencia.Imprimir sent) {
         avaliar(sent.expresion);
-        fragmento.escrever(OpCode.IMPRIMIR);
+        fragmento.escribir(OpCode.IMPRIMIR);
         return null;
     }
 
     @Override
     public Void visitarSentenciaExpresion(Sentencia.Expresion sent) {
+        if (incrementar(sent.expresion)) return null;
 
         avaliar(sent.expresion);
-        fragmento.escrever(OpCode.POP); 
+
+        fragmento.escribir(OpCode.POP); 
 
         return null;
     }
 
+    // Superinstruções: 'variable < constante' (ou '>') como condição vira uma só instrução de comparar e saltar,
+    // em vez de LEER, CONSTANTE, MENOR_ENT e SALTAR_SI_FALSO. Retorna o offset do destino para o patch.
+    private int saltarSiFalso(Expr condicion) {
+        if (condicion instanceof Expr.Binario) {
+            Expr.Binario bin = (Expr.Binario) condicion;
+            if (comparacionFusionable(bin.operador.tipo) && bin.izquierda instanceof Expr.Variable
+                    && bin.izquierda.tipo == Tipo.ENTERO
+                    && bin.derecha instanceof Expr.Literal && ((Expr.Literal) bin.derecha).valor instanceof Long) {
+                Token nombre = ((Expr.Variable) bin.izquierda).nombre;
+                int k = fragmento.agregarConstante(((Expr.Literal) bin.derecha).valor);
+                int slot = scope.resolveLocal(nombre.simbolo);
+                boolean local = slot != -1;
+                if (!local) slot = slotGlobal(nombre);
+                return escribirSaltarSiNo(fragmento, bin.operador.tipo, local, slot, k);
+            }
+        }
+
+        avaliar(condicion);
+        return fragmento.escribir(OpCode.SALTAR_SI_FALSO, -1);
+    }
+
+    // As escolhas das superinstruções ficam nestes auxiliares estáticos, que o CompiladorUnaPasada também usa.
+
+    // Operadores de 'variable op constante' que SALTAR_SI_NO_MENOR_* e SALTAR_SI_NO_MAYOR_* comparam.
+    static boolean comparacionFusionable(TokenType operador) {
+        return operador == TokenType.MENOR || operador == TokenType.MAYOR;
+    }
+
+    static int escribirSaltarSiNo(Fragmento fragmento, TokenType operador, boolean local, int slot, int constante) {
+        OpCode op;
+        if (operador == TokenType.MENOR) {
+            op = local ? OpCode.SALTAR_SI_NO_MENOR_LOCAL : OpCode.SALTAR_SI_NO_MENOR_GLOBAL;
+        } else {
+            op = local ? OpCode.SALTAR_SI_NO_MAYOR_LOCAL : OpCode.SALTAR_SI_NO_MAYOR_GLOBAL;
+        }
+        return fragmento.escribir(op, slot, constante, -1);
+    }
+
+    // Operadores de 'x = x op constante' que INCREMENTAR_* soma.
+    static boolean incrementoFusionable(TokenType operador) {
+        return operador == TokenType.MAS || operador == TokenType.MENOS;
+    }
+
+    // O que INCREMENTAR_* soma para 'x = x op literal', ou null se '- literal' não cabe num long.
+    static Long deltaDeIncremento(TokenType operador, long literal) {
+        if (operador == TokenType.MAS) return literal;
+        if (literal == Long.MIN_VALUE) return null;
+        return -literal;
+    }
+
+    static void escribirIncrementar(Fragmento fragmento, boolean local, int slot, int constante) {
+        fragmento.escribir(local ? OpCode.INCREMENTAR_LOCAL : OpCode.INCREMENTAR_GLOBAL, slot, constante);
+    }
+
+    // 'x = x + constante;' (ou '- constante') como sentença vira INCREMENTAR_LOCAL/INCREMENTAR_GLOBAL,
+    // que soma direto no slot sem passar pela pilha.
+    private boolean incrementar(Expr expr) {
+        if (!(expr instanceof Expr.Asignar) || expr.tipo != Tipo.ENTERO) return false;
+        Expr.Asignar asignar = (Expr.Asignar) expr;
+        if (!(asignar.valor instanceof Expr.Binario)) return false;
+        Expr.Binario bin = (Expr.Binario) asignar.valor;
+        if (!incrementoFusionable(bin.operador.tipo)) return false;
+        if (!(bin.izquierda instanceof Expr.Variable) || bin.izquierda.tipo != Tipo.ENTERO) return false;
+        if (((Expr.Variable) bin.izquierda).nombre.simbolo != asignar.nombre.simbolo) return false;
+        if (!(bin.derecha instanceof Expr.Literal) || !(((Expr.Literal) bin.derecha).valor instanceof Long)) return false;
+
+        Long delta = deltaDeIncremento(bin.operador.tipo, (Long) ((Expr.Literal) bin.derecha).valor);
+        if (delta == null) return false;
+        int k = fragmento.agregarConstante(delta);
+        int slot = scope.resolveLocal(asignar.nombre.simbolo);
+        boolean local = slot != -1;
+        if (!local) slot = slotGlobal(asignar.nombre);
+        escribirIncrementar(fragmento, local, slot, k);
+        return true;
+    }
+
 
 
     @Override
     public Void visitarExprBinario(Expr.Binario expr) {
+        Tipo numerico = tipoNumerico(expr.izquierda.tipo, expr.derecha.tipo);
+
         avaliar(expr.izquierda);
+        convertir(fragmento, expr.izquierda.tipo, numerico);
         avaliar(expr.derecha);
+        convertir(fragmento, expr.derecha.tipo, numerico);
 
-        switch (expr.operador.tipo) {
-            case MAS:       fragmento.escrever(OpCode.SUMAR); break;
-            case MENOS:     fragmento.escrever(OpCode.RESTAR); break;
-            case ASTERISCO: fragmento.escrever(OpCode.MULTIPLICAR); break;
-            case BARRA:     fragmento.escrever(OpCode.DIVIDIR); break;
-            case IGUAL_IGUAL: fragmento.escrever(OpCode.IGUAL); break;
-            case MAYOR:     fragmento.escrever(OpCode.MAYOR); break;
-            case MENOR:     fragmento.escrever(OpCode.MENOR); break;
+        escribirBinario(fragmento, expr.operador.tipo, numerico, expr.tipo);
+        return null;
+    }
+
+    static void escribirBinario(Fragmento fragmento, TokenType operador, Tipo numerico, Tipo tipo) {
+        switch (operador) {
+            case MAS:
+                if (numerico == null && tipo == Tipo.CADENA) fragmento.escribir(OpCode.CONCATENAR);
+                else escribirNumerico(fragmento, numerico, OpCode.SUMAR_ENT, OpCode.SUMAR_FLO, OpCode.SUMAR);
+                break;
+            case MENOS:     escribirNumerico(fragmento, numerico, OpCode.RESTAR_ENT, OpCode.RESTAR_FLO, OpCode.RESTAR); break;
+            case ASTERISCO: escribirNumerico(fragmento, numerico, OpCode.MULTIPLICAR_ENT, OpCode.MULTIPLICAR_FLO, OpCode.MULTIPLICAR); break;
+            case BARRA:     escribirNumerico(fragmento, numerico, OpCode.DIVIDIR_ENT, OpCode.DIVIDIR_FLO, OpCode.DIVIDIR); break;
+            case IGUAL_IGUAL: escribirNumerico(fragmento, numerico, OpCode.IGUAL_ENT, OpCode.IGUAL_FLO, OpCode.IGUAL); break;
+            case MAYOR:     escribirNumerico(fragmento, numerico, OpCode.MAYOR_ENT, OpCode.MAYOR_FLO, OpCode.MAYOR); break;
+            case MENOR:     escribirNumerico(fragmento, numerico, OpCode.MENOR_ENT, OpCode.MENOR_FLO, OpCode.MENOR); break;
+            case EXCLAMACION_IGUAL:
+                escribirNumerico(fragmento, numerico, OpCode.IGUAL_ENT, OpCode.IGUAL_FLO, OpCode.IGUAL);
+                negar(fragmento, tipo);
+                break;
+            case MAYOR_IGUAL:
+                escribirNumerico(fragmento, numerico, OpCode.MENOR_ENT, OpCode.MENOR_FLO, OpCode.MENOR);
+                negar(fragmento, tipo);
+                break;
+            case MENOR_IGUAL:
+                escribirNumerico(fragmento, numerico, OpCode.MAYOR_ENT, OpCode.MAYOR_FLO, OpCode.MAYOR);
+                negar(fragmento, tipo);
+                break;
             default: throw new RuntimeException("Operador desconhecido em bytecode");
         }
-        return null;
+    }
+
+    private static boolean esNumerico(Tipo tipo) {
+        return tipo == Tipo.ENTERO || tipo == Tipo.FLOTANTE;
+    }
+
+    // ENTERO quando os dois lados são ENTERO, FLOTANTE se algum for FLOTANTE, null se o tipo não é numérico ou é desconhecido.
+    static Tipo tipoNumerico(Tipo izquierda, Tipo derecha) {
+        if (!esNumerico(izquierda) || !esNumerico(derecha)) return null;
+        if (izquierda == Tipo.FLOTANTE || derecha == Tipo.FLOTANTE) return Tipo.FLOTANTE;
+        return Tipo.ENTERO;
+    }
+
+    static void convertir(Fragmento fragmento, Tipo tipoValor, Tipo tipoDestino) {
+        if (tipoValor == Tipo.ENTERO && tipoDestino == Tipo.FLOTANTE) {
+            fragmento.escribir(OpCode.ENTERO_A_FLOTANTE);
+        }
+    }
+
+    static void escribirNumerico(Fragmento fragmento, Tipo numerico, OpCode entero, OpCode flotante, OpCode generico) {
+        if (numerico == Tipo.ENTERO) fragmento.escribir(entero);
+        else if (numerico == Tipo.FLOTANTE) fragmento.escribir(flotante);
+        else fragmento.escribir(generico);
+    }
+
+    static void negar(Fragmento fragmento, Tipo tipo) {
+        fragmento.escribir(tipo == Tipo.BOOLEANO ? OpCode.NOT_BOOL : OpCode.NOT);
     }
 
     @Override
     public Void visitarExprLiteral(Expr.Literal expr) {
         int idx = fragmento.agregarConstante(expr.valor);
-        fragmento.escrever(OpCode.CONSTANTE, idx);
+        fragmento.escribir(OpCode.CONSTANTE, idx);
         return null;
     }
 
     @Override
     public Void visitarExprVariable(Expr.Variable expr) {
-        int arg = scope.resolveLocal(expr.nombre.lexema);
+        int arg = scope.resolveLocal(expr.nombre.simbolo);
         if (arg != -1) {
-            fragmento.escrever(OpCode.LEER_LOCAL, arg);
+            fragmento.escribir(OpCode.LEER_LOCAL, arg);
         } else {
-            arg = fragmento.agregarConstante(expr.nombre.lexema);
-            fragmento.escrever(OpCode.LEER_GLOBAL, arg);
+            fragmento.escribir(OpCode.LEER_GLOBAL, slotGlobal(expr.nombre));
         }
         return null;
     }
@@ -206,19 +389,21 @@ public class GeneradorByteCode implements Expr.Visitante<Void>, Sentencia.Visita
     @Override
     public Void visitarExprAsignar(Expr.Asignar expr) {
         avaliar(expr.valor);
+        convertir(fragmento, expr.valor.tipo, expr.tipo);
 
-        int arg = scope.resolveLocal(expr.nombre.lexema);
+        int arg = scope.resolveLocal(expr.nombre.simbolo);
         if (arg != -1) {
-            fragmento.escrever(OpCode.ASIGNAR_LOCAL, arg);
+            fragmento.escribir(OpCode.ASIGNAR_LOCAL, arg);
         } else {
-            arg = fragmento.agregarConstante(expr.nombre.lexema);
-            fragmento.escrever(OpCode.ASIGNAR_GLOBAL, arg);
+            fragmento.escribir(OpCode.ASIGNAR_GLOBAL, slotGlobal(expr.nombre));
         }
         return null;
     }
 
 
-    @Override public Void visitarExprLlamada(Expr.Llamada expr) { return null; }
+    @Override public Void visitarExprLlamada(Expr.Llamada expr) {
+        throw new IllegalStateException("Llamada sin verificar; el AnalizadorSemantico rechaza todas las llamadas.");
+    }
     @Override
     public Void visitarExprAgrupacion(Expr.Agrupacion expr) {
         avaliar(expr.expresion);
@@ -226,8 +411,19 @@ public class GeneradorByteCode implements Expr.Visitante<Void>, Sentencia.Visita
     }
     @Override public Void visitarExprUnario(Expr.Unario expr) {
         avaliar(expr.derecha);
-        if (expr.operador.tipo == TokenType.MENOS) fragmento.escrever(OpCode.NEGATIVO);
-        if (expr.operador.tipo == TokenType.EXCLAMACION) fragmento.escrever(OpCode.NOT);
+        if (expr.operador.tipo == TokenType.MENOS) {
+            Tipo numerico = tipoNumerico(expr.derecha.tipo, expr.derecha.tipo);
+            escribirNumerico(fragmento, numerico, OpCode.NEGATIVO_ENT, OpCode.NEGATIVO_FLO, OpCode.NEGATIVO);
+        }
+        if (expr.operador.tipo == TokenType.EXCLAMACION) negar(fragmento, expr.tipo);
         return null;
     }
+
+    // A AST plana, uma raiz remontada por vez, com os tipos que o AnalizadorSemantico guardou nela.
+    public void generar(ArbolPlano arbol) {
+        for (int i = 0; i < arbol.totalRaices(); i++) {
+            ejecutar(arbol.sentencia(i));
+        }
+        terminar();
+    }
 }
@@ -0,0 +1,332 @@
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Propósito: Variante do GeneradorByteCode para a MvRegistros: percorre a AST verificada e emite instruções de três
+ * endereços no FragmentoRegistros.
+ * Detalhes Chave: Cada local recebe um registrador fixo (o seu índice no CompilerScope, como o slot na Mv) e os
+ * temporários de cada sentença são alocados logo acima dos locais e liberados ao fim dela. Variáveis e constantes
+ * são usadas direto como operandos, sem cópia; quem chama avaliar() pode pedir o registrador de destino, de modo que
+ * 'x = x + 1' vira uma única SUMAR_ENT sobre o registrador de x.
+ * Globais declaradas no nível superior, fora de si/mientras, estão definidas em todo o código seguinte; as demais
+ * ganham um VERIFICAR_GLOBAL antes de cada uso, com o mesmo erro de execução da Mv.
+ */
+public class GeneradorRegistros implements Expr.Visitante<Integer>, Sentencia.Visitante<Void> {
+    private final FragmentoRegistros fragmento;
+    private final GeneradorByteCode.CompilerScope scope = new GeneradorByteCode.CompilerScope();
+    private final GeneradorByteCode.PorSimbolo globales = new GeneradorByteCode.PorSimbolo();
+    private final Map<Object, Integer> constantes = new HashMap<>();
+    private final Set<Integer> globalesDefinidas = new HashSet<>();
+    private int dentroDeControl = 0;
+
+    private int libre = 0;
+    private int maximo = 0;
+    // Registrador em que a expressão sendo visitada deve deixar o resultado, ou -1 se qualquer um serve.
+    private int destino = -1;
+
+    public GeneradorRegistros(FragmentoRegistros fragmento) {
+        this.fragmento = fragmento;
+    }
+
+    public void generar(List<Sentencia> sentencias) {
+        for (Sentencia sent : sentencias) {
+            ejecutar(sent);
+        }
+        fragmento.escribir(OpCodeRegistro.RETORNAR);
+        fragmento.enlazar(maximo);
+    }
+
+    private void ejecutar(Sentencia sentencia) {
+        libre = scope.locals.size();
+        sentencia.aceptar(this);
+    }
+
+    private int avaliar(Expr expr, int destino) {
+        if (expr.tipo == null) {
+            throw new IllegalStateException("Expresión sin tipo; el generador de registros necesita la AST verificada.");
+        }
+        int anterior = this.destino;
+        this.destino = destino;
+        int registro = expr.aceptar(this);
+        this.destino = anterior;
+        return registro;
+    }
+
+    private int temporal() {
+        int registro = libre++;
+        if (libre > maximo) maximo = libre;
+        return registro;
+    }
+
+    private int resultado() {
+        return destino != -1 ? destino : temporal();
+    }
+
+    private boolean esTemporal(int registro) {
+        return registro >= scope.locals.size() && registro < FragmentoRegistros.GLOBAL;
+    }
+
+    private int constante(Object valor) {
+        Integer registro = constantes.get(valor);
+        if (registro == null) {
+            registro = fragmento.agregarConstante(valor);
+            constantes.put(valor, registro);
+        }
+        return registro;
+    }
+
+    private int global(Token nombre) {
+        int registro = globales.obtener(nombre.simbolo);
+        if (registro == -1) {
+            registro = fragmento.agregarGlobal(nombre.lexema);
+            globales.poner(nombre.simbolo, registro);
+        }
+        return registro;
+    }
+
+    private int variable(Token nombre) {
+        int local = scope.resolveLocal(nombre.simbolo);
+        if (local != -1) return local;
+        int registro = global(nombre);
+        if (!globalesDefinidas.contains(registro)) {
+            fragmento.escribir(OpCodeRegistro.VERIFICAR_GLOBAL, registro);
+        }
+        return registro;
+    }
+
+    private int mover(int origen) {
+        if (destino == -1 || destino == origen) return origen;
+        fragmento.escribir(OpCodeRegistro.MOVER, destino, origen);
+        return destino;
+    }
+
+    // --- Sentenças ---
+
+    @Override
+    public Void visitarSentenciaDeclaracion(Sentencia.Declaracion sent) {
+        Tipo tipo = Tipo.desdeToken(sent.tipo);
+        int registro;
+        if (scope.scopeDepth > 0) {
+            registro = scope.locals.size();
+            libre = registro;
+            temporal();
+        } else {
+            registro = global(sent.nombre);
+        }
+
+        if (sent.inicializador != null) {
+            if (tipo == Tipo.INDEFINIDO) tipo = sent.inicializador.tipo;
+            asignarEn(registro, sent.inicializador, tipo);
+        } else {
+            fragmento.escribir(OpCodeRegistro.MOVER, registro, constante(GeneradorByteCode.valorInicial(tipo)));
+        }
+
+        if (scope.scopeDepth > 0) {
+            scope.addLocal(sent.nombre.simbolo);
+        } else if (dentroDeControl == 0) {
+            globalesDefinidas.add(registro);
+        }
+        return null;
+    }
+
+    private void asignarEn(int registro, Expr valor, Tipo tipoDestino) {
+        if (valor.tipo == Tipo.ENTERO && tipoDestino == Tipo.FLOTANTE) {
+            fragmento.escribir(OpCodeRegistro.ENTERO_A_FLOTANTE, registro, avaliar(valor, -1));
+        } else {
+            avaliar(valor, registro);
+        }
+    }
+
+    @Override
+    public Void visitarSentenciaBloque(Sentencia.Bloque sent) {
+        scope.beginScope();
+        for (Sentencia s : sent.sentencias) {
+            ejecutar(s);
+        }
+        scope.endScope();
+        return null;
+    }
+
+    @Override
+    public Void visitarSentenciaSi(Sentencia.Si sent) {
+        int salto = saltarSiFalso(sent.condicion);
+        dentroDeControl++;
+        ejecutar(sent.ramaSi);
+        if (sent.ramaSino != null) {
+            int fin = fragmento.escribir(OpCodeRegistro.SALTAR, -1);
+            fragmento.patch(salto, fragmento.tamanio());
+            ejecutar(sent.ramaSino);
+            fragmento.patch(fin, fragmento.tamanio());
+        } else {
+            fragmento.patch(salto, fragmento.tamanio());
+        }
+        dentroDeControl--;
+        return null;
+    }
+
+    @Override
+    public Void visitarSentenciaMientras(Sentencia.Mientras sent) {
+        int inicio = fragmento.tamanio();
+        int salida = saltarSiFalso(sent.condicion);
+        dentroDeControl++;
+        ejecutar(sent.cuerpo);
+        dentroDeControl--;
+        fragmento.escribir(OpCodeRegistro.SALTAR, inicio);
+        fragmento.patch(salida, fragmento.tamanio());
+        return null;
+    }
+
+    @Override
+    public Void visitarSentenciaImprimir(Sentencia.Imprimir sent) {
+        fragmento.escribir(OpCodeRegistro.IMPRIMIR, avaliar(sent.expresion, -1));
+        return null;
+    }
+
+    @Override
+    public Void visitarSentenciaExpresion(Sentencia.Expresion sent) {
+        avaliar(sent.expresion, -1);
+        return null;
+    }
+
+    // Condições 'a < b' e 'a > b' numéricas viram uma só instrução de comparar e saltar. Retorna o offset do destino.
+    private int saltarSiFalso(Expr condicion) {
+        if (condicion instanceof Expr.Binario) {
+            Expr.Binario bin = (Expr.Binario) condicion;
+            Tipo numerico = GeneradorByteCode.tipoNumerico(bin.izquierda.tipo, bin.derecha.tipo);
+            OpCodeRegistro op = null;
+            if (numerico != null && bin.operador.tipo == TokenType.MENOR) {
+                op = numerico == Tipo.ENTERO ? OpCodeRegistro.SALTAR_SI_NO_MENOR_ENT : OpCodeRegistro.SALTAR_SI_NO_MENOR_FLO;
+            } else if (numerico != null && bin.operador.tipo == TokenType.MAYOR) {
+                op = numerico == Tipo.ENTERO ? OpCodeRegistro.SALTAR_SI_NO_MAYOR_ENT : OpCodeRegistro.SALTAR_SI_NO_MAYOR_FLO;
+            }
+            if (op != null) {
+                int[] operandos = operandos(bin, numerico);
+                return fragmento.escribir(op, operandos[0], operandos[1], -1);
+            }
+        }
+        return fragmento.escribir(OpCodeRegistro.SALTAR_SI_FALSO, avaliar(condicion, -1), -1);
+    }
+
+    // --- Expressões ---
+
+    @Override
+    public Integer visitarExprBinario(Expr.Binario expr) {
+        Tipo numerico = GeneradorByteCode.tipoNumerico(expr.izquierda.tipo, expr.derecha.tipo);
+        int[] operandos = operandos(expr, numerico);
+        int a = operandos[0];
+        int b = operandos[1];
+        int d = resultado();
+
+        switch (expr.operador.tipo) {
+            case MAS:
+                if (numerico == null && expr.tipo == Tipo.CADENA) fragmento.escribir(OpCodeRegistro.CONCATENAR, d, a, b);
+                else escribirNumerico(numerico, OpCodeRegistro.SUMAR_ENT, OpCodeRegistro.SUMAR_FLO, OpCodeRegistro.SUMAR, d, a, b);
+                break;
+            case MENOS:     escribirNumerico(numerico, OpCodeRegistro.RESTAR_ENT, OpCodeRegistro.RESTAR_FLO, OpCodeRegistro.RESTAR, d, a, b); break;
+            case ASTERISCO: escribirNumerico(numerico, OpCodeRegistro.MULTIPLICAR_ENT, OpCodeRegistro.MULTIPLICAR_FLO, OpCodeRegistro.MULTIPLICAR, d, a, b); break;
+            case BARRA:     escribirNumerico(numerico, OpCodeRegistro.DIVIDIR_ENT, OpCodeRegistro.DIVIDIR_FLO, OpCodeRegistro.DIVIDIR, d, a, b); break;
+            case IGUAL_IGUAL: escribirNumerico(numerico, OpCodeRegistro.IGUAL_ENT, OpCodeRegistro.IGUAL_FLO, OpCodeRegistro.IGUAL, d, a, b); break;
+            case MAYOR:     escribirNumerico(numerico, OpCodeRegistro.MAYOR_ENT, OpCodeRegistro.MAYOR_FLO, OpCodeRegistro.MAYOR, d, a, b); break;
+            case MENOR:     escribirNumerico(numerico, OpCodeRegistro.MENOR_ENT, OpCodeRegistro.MENOR_FLO, OpCodeRegistro.MENOR, d, a, b); break;
+            case EXCLAMACION_IGUAL:
+                escribirNumerico(numerico, OpCodeRegistro.IGUAL_ENT, OpCodeRegistro.IGUAL_FLO, OpCodeRegistro.IGUAL, d, a, b);
+                negar(expr, d, d);
+                break;
+            case MAYOR_IGUAL:
+                escribirNumerico(numerico, OpCodeRegistro.MENOR_ENT, OpCodeRegistro.MENOR_FLO, OpCodeRegistro.MENOR, d, a, b);
+                negar(expr, d, d);
+                break;
+            case MENOR_IGUAL:
+                escribirNumerico(numerico, OpCodeRegistro.MAYOR_ENT, OpCodeRegistro.MAYOR_FLO, OpCodeRegistro.MAYOR, d, a, b);
+                negar(expr, d, d);
+                break;
+            default: throw new RuntimeException("Operador desconhecido em bytecode");
+        }
+        return d;
+    }
+
+    // Avalia os dois lados já convertidos para o tipo da operação. Se a direita atribui a alguma variável, a esquerda
+    // é copiada antes para um temporário, preservando a ordem de avaliação da Mv.
+    private int[] operandos(Expr.Binario expr, Tipo numerico) {
+        int a = avaliar(expr.izquierda, contieneAsignacion(expr.derecha) ? temporal() : -1);
+        a = convertir(a, expr.izquierda.tipo, numerico);
+        int b = avaliar(expr.derecha, -1);
+        b = convertir(b, expr.derecha.tipo, numerico);
+        return new int[]{a, b};
+    }
+
+    private static boolean contieneAsignacion(Expr expr) {
+        if (expr instanceof Expr.Asignar) return true;
+        if (expr instanceof Expr.Binario) {
+            return contieneAsignacion(((Expr.Binario) expr).izquierda) || contieneAsignacion(((Expr.Binario) expr).derecha);
+        }
+        if (expr instanceof Expr.Unario) return contieneAsignacion(((Expr.Unario) expr).derecha);
+        if (expr instanceof Expr.Agrupacion) return contieneAsignacion(((Expr.Agrupacion) expr).expresion);
+        return false;
+    }
+
+    private int convertir(int registro, Tipo tipoValor, Tipo tipoDestino) {
+        if (tipoValor == Tipo.ENTERO && tipoDestino == Tipo.FLOTANTE) {
+            int d = esTemporal(registro) ? registro : temporal();
+            fragmento.escribir(OpCodeRegistro.ENTERO_A_FLOTANTE, d, registro);
+            return d;
+        }
+        return registro;
+    }
+
+    private void escribirNumerico(Tipo numerico, OpCodeRegistro entero, OpCodeRegistro flotante, OpCodeRegistro generico,
+                                  int d, int a, int b) {
+        if (numerico == Tipo.ENTERO) fragmento.escribir(entero, d, a, b);
+        else if (numerico == Tipo.FLOTANTE) fragmento.escribir(flotante, d, a, b);
+        else fragmento.escribir(generico, d, a, b);
+    }
+
+    private void negar(Expr expr, int d, int a) {
+        fragmento.escribir(expr.tipo == Tipo.BOOLEANO ? OpCodeRegistro.NOT_BOOL : OpCodeRegistro.NOT, d, a);
+    }
+
+    @Override
+    public Integer visitarExprLiteral(Expr.Literal expr) {
+        return mover(constante(expr.valor));
+    }
+
+    @Override
+    public Integer visitarExprVariable(Expr.Variable expr) {
+        return mover(variable(expr.nombre));
+    }
+
+    @Override
+    public Integer visitarExprAsignar(Expr.Asignar expr) {
+        int registro = variable(expr.nombre);
+        asignarEn(registro, expr.valor, expr.tipo);
+        return mover(registro);
+    }
+
+    @Override
+    public Integer visitarExprLlamada(Expr.Llamada expr) {
+        throw new IllegalStateException("Llamada sin verificar; el AnalizadorSemantico rechaza todas las llamadas.");
+    }
+
+    @Override
+    public Integer visitarExprAgrupacion(Expr.Agrupacion expr) {
+        return avaliar(expr.expresion, destino);
+    }
+
+    @Override
+    public Integer visitarExprUnario(Expr.Unario expr) {
+        int a = avaliar(expr.derecha, -1);
+        int d = resultado();
+        if (expr.operador.tipo == TokenType.MENOS) {
+            Tipo numerico = GeneradorByteCode.tipoNumerico(expr.derecha.tipo, expr.derecha.tipo);
+            if (numerico == Tipo.ENTERO) fragmento.escribir(OpCodeRegistro.NEGATIVO_ENT, d, a);
+            else if (numerico == Tipo.FLOTANTE) fragmento.escribir(OpCodeRegistro.NEGATIVO_FLO, d, a);
+            else fragmento.escribir(OpCodeRegistro.NEGATIVO, d, a);
+        } else {
+            negar(expr, d, a);
+        }
+        return d;
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * Propósito: Define a representação de valores sem boxing usada pela Mv: cada valor é uma etiqueta (byte),
+ * 64 bits de dados (long) e, apenas para cadenas, uma referência guardada numa tabela paralela.
+ * Detalhes Chave: ENTERO guarda o próprio long, FLOTANTE os bits do double (Double.doubleToRawLongBits) e
+ * BOOLEANO 0 ou 1; NULO tem bits 0, de modo que também é falso. INDEFINIDO marca slots globais ainda não definidos.
+ * Os métodos estáticos convertem de/para Object só nas bordas (constantes e imprimir).
+ */
+final class Valor {
+    static final byte NULO = 0;
+    static final byte BOOLEANO = 1;
+    static final byte ENTERO = 2;
+    static final byte FLOTANTE = 3;
+    static final byte REFERENCIA = 4;
+    static final byte INDEFINIDO = 5;
+
+    private Valor() {
+    }
+
+    static byte etiqueta(Object valor) {
+        if (valor == null) return NULO;
+        if (valor instanceof Boolean) return BOOLEANO;
+        if (valor instanceof Long) return ENTERO;
+        if (valor instanceof Double) return FLOTANTE;
+        return REFERENCIA;
+    }
+
+    static long bits(Object valor) {
+        if (valor instanceof Boolean) return (Boolean) valor ? 1L : 0L;
+        if (valor instanceof Long) return (Long) valor;
+        if (valor instanceof Double) return Double.doubleToRawLongBits((Double) valor);
+        return 0L;
+    }
+
+    static Object decodificar(byte etiqueta, long bits, Object referencia) {
+        switch (etiqueta) {
+            case BOOLEANO: return bits != 0;
+            case ENTERO: return bits;
+            case FLOTANTE: return Double.longBitsToDouble(bits);
+            case REFERENCIA: return referencia;
+            default: return null;
+        }
+    }
+
+    static boolean esNumero(byte etiqueta) {
+        return etiqueta == ENTERO || etiqueta == FLOTANTE;
+    }
+
+    static double comoDouble(byte etiqueta, long bits) {
+        return etiqueta == ENTERO ? (double) bits : Double.longBitsToDouble(bits);
+    }
+}
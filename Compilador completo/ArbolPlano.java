@@ -0,0 +1,389 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Propósito: Representação alternativa da AST, com os nós guardados em arrays paralelos de primitivos em vez de um
+ * objeto Expr ou Sentencia por nó (usada com --ast-plana).
+ * Detalhes Chave: O AnalizadorSintactico analisa cada declaração de nível superior com a gramática de sempre e a
+ * entrega a agregarRaiz(), que a achata nos arrays; sentencia() remonta uma raiz como Sentencia para os mesmos
+ * visitantes do AnalizadorSemantico e do GeneradorByteCode, de modo que só uma declaração por vez existe como objetos.
+ * guardarTipos() copia para os arrays os Expr.tipo que o AnalizadorSemantico preencheu na última raiz remontada, e a
+ * remontagem seguinte os devolve aos Expr.
+ * Cada nó é um índice nos arrays: a classe do nó, o TokenType do operador ou da palavra-chave, três campos de uso
+ * definido pela classe (filhos, símbolo do nome ou outros valores, -1 quando ausentes), a linha e o Tipo. Nenhum
+ * Token é guardado: o lexema vem da TablaSimbolos (nomes) ou do próprio TokenType (operadores e palavras-chave).
+ * Literais inteiros e flutuantes ficam nos próprios campos (os 64 bits divididos entre segundo e tercero); só as
+ * cadeias e os booleanos vão para valores. As listas (sentenças de um bloco, argumentos de uma chamada) ficam
+ * contíguas em listas. compactar() corta a folga dos arrays quando a análise termina.
+ * Campos por classe de nó:
+ *   ASIGNAR: primero = valor, segundo = símbolo.          BINARIO: primero = esquerda, segundo = direita, operador.
+ *   LLAMADA: primero = chamado, segundo/tercero = lista.  AGRUPACION: primero = expressão.
+ *   LITERAL: primero = índice em valores, ou ENTERO_EN_LINEA/FLOTANTE_EN_LINEA com o valor em segundo/tercero.
+ *   UNARIO: primero = operando, operador.                 VARIABLE: primero = símbolo.
+ *   BLOQUE: segundo/tercero = lista.                      EXPRESION e IMPRIMIR: primero = expressão.
+ *   SI: primero = condição, segundo = então, tercero = senão.
+ *   MIENTRAS: primero = condição, segundo = corpo, operador (MIENTRAS ou PARA).
+ *   DECLARACION: primero = inicializador, segundo = linha da palavra do tipo, tercero = símbolo, operador = tipo.
+ */
+public class ArbolPlano implements Expr.Visitante<Integer>, Sentencia.Visitante<Integer> {
+    static final byte ASIGNAR = 0;
+    static final byte BINARIO = 1;
+    static final byte LLAMADA = 2;
+    static final byte AGRUPACION = 3;
+    static final byte LITERAL = 4;
+    static final byte UNARIO = 5;
+    static final byte VARIABLE = 6;
+    static final byte BLOQUE = 7;
+    static final byte EXPRESION = 8;
+    static final byte SI = 9;
+    static final byte IMPRIMIR = 10;
+    static final byte MIENTRAS = 11;
+    static final byte DECLARACION = 12;
+
+    private static final int ENTERO_EN_LINEA = -1;
+    private static final int FLOTANTE_EN_LINEA = -2;
+
+    private static final TokenType[] TIPOS_TOKEN = TokenType.values();
+    private static final Tipo[] TIPOS = Tipo.values();
+    // Texto fixo dos operadores e palavras-chave que podem aparecer num nó.
+    private static final String[] TEXTOS = new String[TIPOS_TOKEN.length];
+
+    static {
+        texto(TokenType.MENOS, "-");
+        texto(TokenType.MAS, "+");
+        texto(TokenType.BARRA, "/");
+        texto(TokenType.ASTERISCO, "*");
+        texto(TokenType.EXCLAMACION, "!");
+        texto(TokenType.EXCLAMACION_IGUAL, "!=");
+        texto(TokenType.IGUAL_IGUAL, "==");
+        texto(TokenType.MAYOR, ">");
+        texto(TokenType.MAYOR_IGUAL, ">=");
+        texto(TokenType.MENOR, "<");
+        texto(TokenType.MENOR_IGUAL, "<=");
+        texto(TokenType.PARENTESIS_DERECHO, ")");
+        texto(TokenType.SI, "si");
+        texto(TokenType.MIENTRAS, "mientras");
+        texto(TokenType.PARA, "para");
+        texto(TokenType.VAR, "var");
+        texto(TokenType.ENTERO, "entero");
+        texto(TokenType.FLOTANTE, "flotante");
+        texto(TokenType.BOOLEANO, "booleano");
+        texto(TokenType.CADENA, "cadena");
+    }
+
+    private static void texto(TokenType tipo, String texto) {
+        TEXTOS[tipo.ordinal()] = texto;
+    }
+
+    private final TablaSimbolos simbolosTabla;
+    private byte[] clases = new byte[256];
+    private byte[] operadores = new byte[256];
+    private int[] primeros = new int[256];
+    private int[] segundos = new int[256];
+    private int[] terceros = new int[256];
+    private int[] lineas = new int[256];
+    private byte[] tipos = new byte[256];
+    private int tamanio = 0;
+
+    private final ArrayList<Object> valores = new ArrayList<>();
+    private int[] listas = new int[256];
+    private int tamanioListas = 0;
+    private int[] pila = new int[64];
+    private int tamanioPila = 0;
+    private int[] raices = new int[64];
+    private int totalRaices = 0;
+    // Os Expr da última raiz remontada por sentencia(), com o nó de cada um, para guardarTipos().
+    private int[] nodosRemontados = new int[64];
+    private Expr[] remontados = new Expr[64];
+    private int totalRemontados = 0;
+
+    ArbolPlano(TablaSimbolos simbolosTabla) {
+        this.simbolosTabla = simbolosTabla;
+    }
+
+    // Uma declaração de nível superior sem erro de sintaxe, achatada no fim da árvore.
+    void agregarRaiz(Sentencia sentencia) {
+        int nodo = aplanar(sentencia);
+        if (totalRaices == raices.length) raices = Arrays.copyOf(raices, totalRaices * 2);
+        raices[totalRaices++] = nodo;
+    }
+
+    // Chamado pelo AnalizadorSintactico no fim da análise; depois dele só guardarTipos() altera a árvore.
+    void compactar() {
+        redimensionar(tamanio);
+        listas = Arrays.copyOf(listas, tamanioListas);
+        raices = Arrays.copyOf(raices, totalRaices);
+        pila = new int[0];
+        valores.trimToSize();
+    }
+
+    int totalRaices() {
+        return totalRaices;
+    }
+
+    // A raiz i remontada como Sentencia, com o Expr.tipo de cada expressão já guardado (null antes da análise).
+    Sentencia sentencia(int i) {
+        Arrays.fill(remontados, 0, totalRemontados, null);
+        totalRemontados = 0;
+        return remontar(raices[i]);
+    }
+
+    // Guarda os tipos que o AnalizadorSemantico atribuiu à última raiz remontada.
+    void guardarTipos() {
+        for (int i = 0; i < totalRemontados; i++) {
+            Tipo tipo = remontados[i].tipo;
+            tipos[nodosRemontados[i]] = (byte) (tipo == null ? -1 : tipo.ordinal());
+        }
+    }
+
+    private int aplanar(Sentencia sentencia) {
+        return sentencia.aceptar(this);
+    }
+
+    private int aplanar(Expr expr) {
+        return expr.aceptar(this);
+    }
+
+    private int agregar(byte clase, TokenType operador, int primero, int segundo, int tercero, int linea) {
+        if (tamanio == clases.length) redimensionar(tamanio * 2);
+        clases[tamanio] = clase;
+        operadores[tamanio] = (byte) (operador == null ? -1 : operador.ordinal());
+        primeros[tamanio] = primero;
+        segundos[tamanio] = segundo;
+        terceros[tamanio] = tercero;
+        lineas[tamanio] = linea;
+        tipos[tamanio] = -1;
+        return tamanio++;
+    }
+
+    private void redimensionar(int capacidad) {
+        clases = Arrays.copyOf(clases, capacidad);
+        operadores = Arrays.copyOf(operadores, capacidad);
+        primeros = Arrays.copyOf(primeros, capacidad);
+        segundos = Arrays.copyOf(segundos, capacidad);
+        terceros = Arrays.copyOf(terceros, capacidad);
+        lineas = Arrays.copyOf(lineas, capacidad);
+        tipos = Arrays.copyOf(tipos, capacidad);
+    }
+
+    // Achatamento: cada nó entra depois dos filhos. Os elementos de uma lista esperam na pilha auxiliar, a partir
+    // da marca, até o nó da lista copiá-los para listas.
+
+    @Override
+    public Integer visitarExprAsignar(Expr.Asignar expr) {
+        int valor = aplanar(expr.valor);
+        return agregar(ASIGNAR, null, valor, expr.nombre.simbolo, -1, expr.nombre.linea);
+    }
+
+    @Override
+    public Integer visitarExprBinario(Expr.Binario expr) {
+        int izquierda = aplanar(expr.izquierda);
+        int derecha = aplanar(expr.derecha);
+        return agregar(BINARIO, expr.operador.tipo, izquierda, derecha, -1, expr.operador.linea);
+    }
+
+    @Override
+    public Integer visitarExprLlamada(Expr.Llamada expr) {
+        int llamado = aplanar(expr.llamado);
+        int marca = tamanioPila;
+        for (Expr argumento : expr.argumentos) apilar(aplanar(argumento));
+        int total = tamanioPila - marca;
+        return agregar(LLAMADA, expr.parentesis.tipo, llamado, cerrarLista(marca), total, expr.parentesis.linea);
+    }
+
+    @Override
+    public Integer visitarExprAgrupacion(Expr.Agrupacion expr) {
+        return agregar(AGRUPACION, null, aplanar(expr.expresion), -1, -1, 0);
+    }
+
+    @Override
+    public Integer visitarExprLiteral(Expr.Literal expr) {
+        Object valor = expr.valor;
+        if (valor instanceof Long) return literalEnLinea(ENTERO_EN_LINEA, (Long) valor);
+        if (valor instanceof Double) return literalEnLinea(FLOTANTE_EN_LINEA, Double.doubleToRawLongBits((Double) valor));
+        valores.add(valor);
+        return agregar(LITERAL, null, valores.size() - 1, -1, -1, 0);
+    }
+
+    private int literalEnLinea(int clase, long bits) {
+        return agregar(LITERAL, null, clase, (int) (bits >>> 32), (int) bits, 0);
+    }
+
+    @Override
+    public Integer visitarExprUnario(Expr.Unario expr) {
+        int derecha = aplanar(expr.derecha);
+        return agregar(UNARIO, expr.operador.tipo, derecha, -1, -1, expr.operador.linea);
+    }
+
+    @Override
+    public Integer visitarExprVariable(Expr.Variable expr) {
+        return agregar(VARIABLE, null, expr.nombre.simbolo, -1, -1, expr.nombre.linea);
+    }
+
+    // As declarações com erro de sintaxe ficam null no bloco do AnalizadorSintactico e não entram na árvore.
+    @Override
+    public Integer visitarSentenciaBloque(Sentencia.Bloque sent) {
+        int marca = tamanioPila;
+        for (Sentencia s : sent.sentencias) {
+            if (s != null) apilar(aplanar(s));
+        }
+        int total = tamanioPila - marca;
+        return agregar(BLOQUE, null, -1, cerrarLista(marca), total, 0);
+    }
+
+    @Override
+    public Integer visitarSentenciaExpresion(Sentencia.Expresion sent) {
+        return agregar(EXPRESION, null, aplanar(sent.expresion), -1, -1, 0);
+    }
+
+    @Override
+    public Integer visitarSentenciaSi(Sentencia.Si sent) {
+        int condicion = aplanar(sent.condicion);
+        int ramaSi = aplanar(sent.ramaSi);
+        int ramaSino = sent.ramaSino == null ? -1 : aplanar(sent.ramaSino);
+        return agregar(SI, sent.tokenSi.tipo, condicion, ramaSi, ramaSino, sent.tokenSi.linea);
+    }
+
+    @Override
+    public Integer visitarSentenciaImprimir(Sentencia.Imprimir sent) {
+        return agregar(IMPRIMIR, null, aplanar(sent.expresion), -1, -1, 0);
+    }
+
+    @Override
+    public Integer visitarSentenciaMientras(Sentencia.Mientras sent) {
+        int condicion = aplanar(sent.condicion);
+        int cuerpo = aplanar(sent.cuerpo);
+        return agregar(MIENTRAS, sent.tokenMientras.tipo, condicion, cuerpo, -1, sent.tokenMientras.linea);
+    }
+
+    @Override
+    public Integer visitarSentenciaDeclaracion(Sentencia.Declaracion sent) {
+        int inicializador = sent.inicializador == null ? -1 : aplanar(sent.inicializador);
+        return agregar(DECLARACION, sent.tipo.tipo, inicializador, sent.tipo.linea, sent.nombre.simbolo,
+                sent.nombre.linea);
+    }
+
+    private void apilar(int nodo) {
+        if (tamanioPila == pila.length) pila = Arrays.copyOf(pila, tamanioPila * 2);
+        pila[tamanioPila++] = nodo;
+    }
+
+    private int cerrarLista(int marca) {
+        int total = tamanioPila - marca;
+        if (tamanioListas + total > listas.length) {
+            listas = Arrays.copyOf(listas, Math.max(tamanioListas + total, listas.length * 2));
+        }
+        System.arraycopy(pila, marca, listas, tamanioListas, total);
+        tamanioPila = marca;
+        tamanioListas += total;
+        return tamanioListas - total;
+    }
+
+    // Remontagem: os Token saem de token() e tokenTipo(), com o mesmo tipo, lexema, linha e símbolo dos originais.
+
+    private Sentencia remontar(int nodo) {
+        switch (clases[nodo]) {
+            case BLOQUE: {
+                List<Sentencia> sentencias = new ArrayList<>(terceros[nodo]);
+                for (int i = 0; i < terceros[nodo]; i++) sentencias.add(remontar(elemento(nodo, i)));
+                return new Sentencia.Bloque(sentencias);
+            }
+            case EXPRESION:
+                return new Sentencia.Expresion(remontarExpr(primeros[nodo]));
+            case IMPRIMIR:
+                return new Sentencia.Imprimir(remontarExpr(primeros[nodo]));
+            case SI: {
+                Sentencia ramaSino = terceros[nodo] < 0 ? null : remontar(terceros[nodo]);
+                return new Sentencia.Si(token(nodo), remontarExpr(primeros[nodo]), remontar(segundos[nodo]), ramaSino);
+            }
+            case MIENTRAS:
+                return new Sentencia.Mientras(token(nodo), remontarExpr(primeros[nodo]), remontar(segundos[nodo]));
+            case DECLARACION: {
+                Expr inicializador = primeros[nodo] < 0 ? null : remontarExpr(primeros[nodo]);
+                return new Sentencia.Declaracion(tokenTipo(nodo), token(nodo), inicializador);
+            }
+            default:
+                throw new IllegalStateException("Nó " + nodo + " não é uma sentença.");
+        }
+    }
+
+    private Expr remontarExpr(int nodo) {
+        Expr expr;
+        switch (clases[nodo]) {
+            case ASIGNAR:
+                expr = new Expr.Asignar(token(nodo), remontarExpr(primeros[nodo]));
+                break;
+            case BINARIO:
+                expr = new Expr.Binario(remontarExpr(primeros[nodo]), token(nodo), remontarExpr(segundos[nodo]));
+                break;
+            case LLAMADA: {
+                Expr llamado = remontarExpr(primeros[nodo]);
+                List<Expr> argumentos = new ArrayList<>(terceros[nodo]);
+                for (int i = 0; i < terceros[nodo]; i++) argumentos.add(remontarExpr(elemento(nodo, i)));
+                expr = new Expr.Llamada(llamado, token(nodo), argumentos);
+                break;
+            }
+            case AGRUPACION:
+                expr = new Expr.Agrupacion(remontarExpr(primeros[nodo]));
+                break;
+            case LITERAL:
+                expr = new Expr.Literal(valor(nodo));
+                break;
+            case UNARIO:
+                expr = new Expr.Unario(token(nodo), remontarExpr(primeros[nodo]));
+                break;
+            case VARIABLE:
+                expr = new Expr.Variable(token(nodo));
+                break;
+            default:
+                throw new IllegalStateException("Nó " + nodo + " não é uma expressão.");
+        }
+        expr.tipo = tipos[nodo] < 0 ? null : TIPOS[tipos[nodo]];
+        if (totalRemontados == remontados.length) {
+            nodosRemontados = Arrays.copyOf(nodosRemontados, totalRemontados * 2);
+            remontados = Arrays.copyOf(remontados, totalRemontados * 2);
+        }
+        nodosRemontados[totalRemontados] = nodo;
+        remontados[totalRemontados++] = expr;
+        return expr;
+    }
+
+    // Elemento i da lista de um BLOQUE ou dos argumentos de uma LLAMADA.
+    private int elemento(int nodo, int i) {
+        return listas[segundos[nodo] + i];
+    }
+
+    private Object valor(int nodo) {
+        if (primeros[nodo] >= 0) return valores.get(primeros[nodo]);
+        long bits = ((long) segundos[nodo] << 32) | (terceros[nodo] & 0xFFFFFFFFL);
+        if (primeros[nodo] == ENTERO_EN_LINEA) return bits;
+        return Double.longBitsToDouble(bits);
+    }
+
+    // Símbolo do nome de uma VARIABLE, ASIGNAR ou DECLARACION; -1 nas demais classes.
+    private int simbolo(int nodo) {
+        switch (clases[nodo]) {
+            case VARIABLE: return primeros[nodo];
+            case ASIGNAR: return segundos[nodo];
+            case DECLARACION: return terceros[nodo];
+            default: return -1;
+        }
+    }
+
+    // O nome nas variáveis, atribuições e declarações, o operador ou a palavra-chave nos demais.
+    private Token token(int nodo) {
+        int simbolo = simbolo(nodo);
+        if (simbolo >= 0) {
+            return new Token(TokenType.IDENTIFICADOR, simbolosTabla.nombre(simbolo), null, lineas[nodo], simbolo);
+        }
+        TokenType tipo = TIPOS_TOKEN[operadores[nodo]];
+        return new Token(tipo, TEXTOS[tipo.ordinal()], null, lineas[nodo], -1);
+    }
+
+    // A palavra do tipo de uma DECLARACION.
+    private Token tokenTipo(int nodo) {
+        TokenType tipo = TIPOS_TOKEN[operadores[nodo]];
+        return new Token(tipo, TEXTOS[tipo.ordinal()], null, segundos[nodo], -1);
+    }
+}
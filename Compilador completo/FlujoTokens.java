@@ -0,0 +1,118 @@
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
+
+/**
+ * Propósito: Fonte de tokens sob demanda: o parser puxa os tokens um a um de um Escaner que lê um canal aos poucos.
+ * Detalhes Chave: Os tokens ficam num anel de CAPACIDAD posições indexado pelo índice absoluto; quando o parser pede
+ * um token ainda não produzido, o Escaner avança o suficiente para produzi-lo. Como a janela de bytes do Escaner é
+ * reaproveitada, o lexema de cada token é decodificado ao entrar no anel. A memória usada fica limitada pelo anel e
+ * pela janela do Escaner, e não pelo tamanho da entrada. Cada token guarda também sua posição absoluta em bytes
+ * (inicio() e fin()), e registrar() faz token() anotar os Token criados, usados pela SesionIncremental.
+ */
+public class FlujoTokens implements FuenteTokens {
+    // Potência de dois; o parser nunca olha mais que o token atual e o anterior.
+    private static final int CAPACIDAD = 16;
+
+    private final Escaner escaner;
+    private final TablaSimbolos tabla;
+    private final TokenType[] tipos = new TokenType[CAPACIDAD];
+    private final String[] lexemas = new String[CAPACIDAD];
+    private final int[] lineas = new int[CAPACIDAD];
+    private final int[] simbolos = new int[CAPACIDAD];
+    private final int[] inicios = new int[CAPACIDAD];
+    private final int[] fines = new int[CAPACIDAD];
+    private int producidos = 0;
+    private List<Token> registro = null;
+
+    FlujoTokens(ReadableByteChannel canal) {
+        this.tabla = new TablaSimbolos();
+        this.escaner = new Escaner(canal, this, tabla);
+    }
+
+    // Tokens de uma fonte já em memória, a partir do byte desde (que está na linha dada).
+    FlujoTokens(ByteBuffer fuente, int desde, int linea, TablaSimbolos simbolos) {
+        this.tabla = simbolos;
+        this.escaner = new Escaner(fuente, desde, linea, this, simbolos);
+    }
+
+    void agregar(TokenType tipo, String lexema, int linea, int simbolo, int inicio, int fin) {
+        int posicion = producidos & (CAPACIDAD - 1);
+        tipos[posicion] = tipo;
+        lexemas[posicion] = lexema;
+        lineas[posicion] = linea;
+        simbolos[posicion] = simbolo;
+        inicios[posicion] = inicio;
+        fines[posicion] = fin;
+        producidos++;
+    }
+
+    int producidos() {
+        return producidos;
+    }
+
+    @Override
+    public TokenType tipo(int i) {
+        return tipos[posicion(i)];
+    }
+
+    @Override
+    public int linea(int i) {
+        return lineas[posicion(i)];
+    }
+
+    @Override
+    public Object literal(int i) {
+        int posicion = posicion(i);
+        return BufferTokens.literal(tipos[posicion], lexemas[posicion]);
+    }
+
+    @Override
+    public int simbolo(int i) {
+        return simbolos[posicion(i)];
+    }
+
+    @Override
+    public TablaSimbolos simbolos() {
+        return tabla;
+    }
+
+    @Override
+    public Token token(int i) {
+        int posicion = posicion(i);
+        Token token = new Token(tipos[posicion], lexemas[posicion],
+                BufferTokens.literal(tipos[posicion], lexemas[posicion]), lineas[posicion], simbolos[posicion]);
+        if (registro != null) registro.add(token);
+        return token;
+    }
+
+    String lexema(int i) {
+        return lexemas[posicion(i)];
+    }
+
+    int inicio(int i) {
+        return inicios[posicion(i)];
+    }
+
+    int fin(int i) {
+        return fines[posicion(i)];
+    }
+
+    // Posição absoluta até onde o Escaner já leu a fonte.
+    int leidos() {
+        return escaner.posicion();
+    }
+
+    // Com uma lista, token() passa a anotar nela cada Token que cria; null desliga o registro.
+    void registrar(List<Token> registro) {
+        this.registro = registro;
+    }
+
+    private int posicion(int i) {
+        while (i >= producidos) escaner.escanearSiguiente();
+        if (i < producidos - CAPACIDAD) {
+            throw new IllegalStateException("Token " + i + " fuera de la ventana del flujo.");
+        }
+        return i & (CAPACIDAD - 1);
+    }
+}
@@ -1,27 +1,54 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * Propósito: Estrutura de dados que armazena o código de Bytecode gerado, incluindo as instruções, operandos e constantes.
- * Detalhes Chave: Contém as listas codigo (OpCodes), operandos e constantes (valores literais).
+ * Detalhes Chave: O código é um único int[] crescente: o ordinal do OpCode seguido dos seus operandos em linha.
+ * As constantes (valores literais) ficam numa lista à parte, e globales guarda o nome de cada slot global.
+ * Também acompanha a altura da pilha instrução a instrução, para que a Mv possa dimensioná-la antes de executar.
  * O método patch é crucial para corrigir os offsets de saltos após a geração do código.
+ * siguiente() cria um Fragmento vazio que continua os slots globais deste, para a execução em fluxo.
+ * recortar() e insertar() deixam o CompiladorUnaPasada corrigir o código recém-escrito de uma expressão.
  * Inclui imprimirDisassembly() para visualização e depuração.
  */
 
 public class Fragmento {
-    List<OpCode> codigo = new ArrayList<>();
+    int[] codigo = new int[64];
+    int tamanio = 0;
+    private int profundidad = 0;
+    private int profundidadMaxima = 0;
     List<Object> constantes = new ArrayList<>();
-    List<Integer> operandos = new ArrayList<>();
+    List<String> globales = new ArrayList<>();
 
     public void escribir(OpCode op) {
-        codigo.add(op);
-        operandos.add(null);
+        agregar(op.ordinal());
+        apilar(op);
     }
 
+    // Retornam o offset do último operando, que é o que patch() espera receber.
     public int escribir(OpCode op, int operando) {
-        codigo.add(op);
-        operandos.add(operando);
-        return codigo.size() - 1;
+        agregar(op.ordinal());
+        agregar(operando);
+        apilar(op);
+        return tamanio - 1;
+    }
+
+    public int escribir(OpCode op, int primero, int segundo) {
+        agregar(op.ordinal());
+        agregar(primero);
+        agregar(segundo);
+        apilar(op);
+        return tamanio - 1;
+    }
+
+    public int escribir(OpCode op, int primero, int segundo, int tercero) {
+        agregar(op.ordinal());
+        agregar(primero);
+        agregar(segundo);
+        agregar(tercero);
+        apilar(op);
+        return tamanio - 1;
     }
 
     public int agregarConstante(Object valor) {
@@ -29,46 +56,134 @@ public class Fragmento {
         return constantes.size() - 1;
     }
 
+    public int agregarGlobal(String nombre) {
+        globales.add(nombre);
+        return globales.size() - 1;
+    }
+
+    // Fragmento vazio que compartilha os nomes dos slots globais deste, para que os slots já atribuídos continuem
+    // valendo no próximo trecho de código.
+    Fragmento siguiente() {
+        Fragmento siguiente = new Fragmento();
+        siguiente.globales = globales;
+        return siguiente;
+    }
+
+    // Altura da pilha depois da última instrução escrita.
+    int profundidad() {
+        return profundidad;
+    }
+
+    // Descarta o código a partir de posicion, onde a pilha tinha a altura profundidad.
+    void recortar(int posicion, int profundidad) {
+        tamanio = posicion;
+        this.profundidad = profundidad;
+    }
+
+    // Insere em posicion uma instrução sem operandos e sem efeito na pilha, empurrando o código seguinte. Só vale
+    // dentro de uma expressão, que não tem saltos: nenhum destino de salto fica depois de posicion.
+    void insertar(int posicion, OpCode op) {
+        agregar(0);
+        System.arraycopy(codigo, posicion, codigo, posicion + 1, tamanio - 1 - posicion);
+        codigo[posicion] = op.ordinal();
+    }
+
     public void patch(int offset, int salto) {
-        operandos.set(offset, salto);
+        codigo[offset] = salto;
+    }
+
+    public int tamanio() {
+        return tamanio;
+    }
+
+    // O gerador só salta entre sentenças, com a pilha na mesma altura nos dois lados do salto,
+    // então somar os efeitos em ordem dá a altura máxima que a pilha pode atingir.
+    public int profundidadMaxima() {
+        return profundidadMaxima;
+    }
+
+    private void apilar(OpCode op) {
+        profundidad += op.efecto;
+        if (profundidad > profundidadMaxima) profundidadMaxima = profundidad;
+    }
+
+    private void agregar(int palabra) {
+        if (tamanio == codigo.length) {
+            codigo = Arrays.copyOf(codigo, codigo.length * 2);
+        }
+        codigo[tamanio++] = palabra;
     }
 
 
     public void imprimirDisassembly() {
         System.out.println("=== ByteCode ===");
 
-        for (int i = 0; i < codigo.size(); i++) {
-            OpCode op = codigo.get(i);
-            Integer operando = operandos.get(i);
+        int i = 0;
+        while (i < tamanio) {
+            OpCode op = OpCode.VALORES[codigo[i]];
 
             // 1. Endereço (Offset)
             System.out.printf("%04d: ", i);
 
             // 2. Nome da Instrução
-            System.out.printf("%-16s", op);
+            System.out.printf("%-26s", op);
 
             // 3. Detalhes do Operando
-            if (operando != null) {
-                if (op == OpCode.CONSTANTE || op == OpCode.DEFINIR_GLOBAL ||
-                        op == OpCode.LEER_GLOBAL || op == OpCode.ASIGNAR_GLOBAL) {
-
-                    try {
-                        Object valor = constantes.get(operando);
-                        if (valor instanceof String) valor = "\"" + valor + "\"";
-                        System.out.printf("#%d  <%s>", operando, valor);
-                    } catch (Exception e) {
-                        System.out.printf("#%d", operando);
-                    }
-
-                } else if (op == OpCode.SALTAR || op == OpCode.SALTAR_SI_FALSO || op == OpCode.LOOP) {
-                    System.out.printf("-> %04d", operando);
-                } else {
-                    System.out.printf("slot %d", operando);
-                }
+            switch (op) {
+                case CONSTANTE:
+                    System.out.print(describirConstante(codigo[i + 1]));
+                    break;
+                case DEFINIR_GLOBAL:
+                case LEER_GLOBAL:
+                case ASIGNAR_GLOBAL:
+                    System.out.print(describirGlobal(codigo[i + 1]));
+                    break;
+                case SALTAR:
+                case SALTAR_SI_FALSO:
+                case LOOP:
+                    System.out.printf("-> %04d", codigo[i + 1]);
+                    break;
+                case LEER_LOCAL:
+                case ASIGNAR_LOCAL:
+                    System.out.printf("slot %d", codigo[i + 1]);
+                    break;
+                case SALTAR_SI_NO_MENOR_LOCAL:
+                case SALTAR_SI_NO_MAYOR_LOCAL:
+                    System.out.printf("slot %d %s %s -> %04d", codigo[i + 1], op == OpCode.SALTAR_SI_NO_MENOR_LOCAL ? "<" : ">",
+                            describirConstante(codigo[i + 2]), codigo[i + 3]);
+                    break;
+                case SALTAR_SI_NO_MENOR_GLOBAL:
+                case SALTAR_SI_NO_MAYOR_GLOBAL:
+                    System.out.printf("%s %s %s -> %04d", describirGlobal(codigo[i + 1]), op == OpCode.SALTAR_SI_NO_MENOR_GLOBAL ? "<" : ">",
+                            describirConstante(codigo[i + 2]), codigo[i + 3]);
+                    break;
+                case INCREMENTAR_LOCAL:
+                    System.out.printf("slot %d += %s", codigo[i + 1], describirConstante(codigo[i + 2]));
+                    break;
+                case INCREMENTAR_GLOBAL:
+                    System.out.printf("%s += %s", describirGlobal(codigo[i + 1]), describirConstante(codigo[i + 2]));
+                    break;
+                default:
+                    break;
             }
             System.out.println();
+            i += 1 + op.operandos;
         }
         System.out.println("===================");
     }
 
+    private String describirConstante(int indice) {
+        try {
+            Object valor = constantes.get(indice);
+            if (valor instanceof String) valor = "\"" + valor + "\"";
+            return String.format("#%d  <%s>", indice, valor);
+        } catch (Exception e) {
+            return String.format("#%d", indice);
+        }
+    }
+
+    private String describirGlobal(int slot) {
+        return String.format("global %d  <%s>", slot, globales.get(slot));
+    }
+
 }
@@ -0,0 +1,21 @@
+/**
+ * Propósito: Define o que o AnalizadorSintactico precisa de uma sequência de tokens, sem fixar onde eles estão guardados.
+ * Detalhes Chave: Os tokens são acessados pelo índice absoluto na sequência. O BufferTokens guarda todos os tokens
+ * do arquivo; o FlujoTokens produz cada token só quando ele é pedido e mantém apenas uma janela curta dos últimos,
+ * o que basta ao parser, que só olha o token atual e o anterior.
+ */
+public interface FuenteTokens {
+
+    TokenType tipo(int i);
+
+    int linea(int i);
+
+    Object literal(int i);
+
+    // Símbolo do identificador na TablaSimbolos, -1 nos demais tokens.
+    int simbolo(int i);
+
+    Token token(int i);
+
+    TablaSimbolos simbolos();
+}
@@ -1,64 +1,314 @@
 import java.io.IOException;
-import java.nio.charset.Charset;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * Propósito: Classe principal e ponto de entrada da aplicação. Orquestra todas as fases do processo
  * de compilação e execução.
- * Detalhes Chave: O método ejecutar() encadeia o Escaner, AnalizadorSintactico, AnalizadorSemantico e a Mv.
- * Lida com o relatório de erros através de flags estáticas (tuvoError, tuvoErrorRuntime).
+ * Detalhes Chave: O método ejecutar() encadeia o Escaner, AnalizadorSintactico, AnalizadorSemantico e o motor de
+ * execução; as opções da linha de comando, descritas em usoIncorrecto(), trocam o motor ou o caminho entre as fases.
+ * Lida com o relatório de erros através de flags estáticas (tuvoError, tuvoErrorRuntime); com um receptor definido,
+ * os erros de compilação vão para ele em vez de System.err.
  */
 
 public class Lox {
 
+    enum Motor { PILA, CLAUSURAS, REGISTROS }
+
     static boolean tuvoError = false;
     static boolean tuvoErrorRuntime = false;
+    static Motor motor = Motor.PILA;
+    static boolean jit = true;
+    static boolean flujo = false;
+    static boolean vigilar = false;
+    static boolean astPlana = false;
+    static boolean paralelo = false;
+    static boolean tuberia = false;
+    static boolean porSentencia = false;
+    static boolean unaPasada = false;
+
+    private static final long INTERVALO_VIGILANCIA = 300;
+
+    interface ReceptorErrores {
+        void error(int linea, String donde, String mensaje);
+    }
+
+    static ReceptorErrores receptor = null;
 
     public static void main(String[] args) throws IOException {
-        if (args.length > 1) {
-            System.out.println("Uso: jlox [script]");
-            System.exit(64);
-        } else if (args.length == 1) {
-            ejecutarArchivo(args[0]);
+        String ruta = null;
+        for (String arg : args) {
+            if (arg.equals("--motor=pila")) {
+                motor = Motor.PILA;
+            } else if (arg.equals("--motor=clausuras")) {
+                motor = Motor.CLAUSURAS;
+            } else if (arg.equals("--motor=registros")) {
+                motor = Motor.REGISTROS;
+            } else if (arg.equals("--sin-jit")) {
+                jit = false;
+            } else if (arg.equals("--flujo")) {
+                flujo = true;
+            } else if (arg.equals("--vigilar")) {
+                vigilar = true;
+            } else if (arg.equals("--ast-plana")) {
+                astPlana = true;
+            } else if (arg.equals("--paralelo")) {
+                paralelo = true;
+            } else if (arg.equals("--tuberia")) {
+                tuberia = true;
+            } else if (arg.equals("--por-sentencia")) {
+                porSentencia = true;
+            } else if (arg.equals("--una-pasada")) {
+                unaPasada = true;
+            } else if (ruta == null && !arg.startsWith("--")) {
+                ruta = arg;
+            } else {
+                usoIncorrecto();
+            }
+        }
+        // A AST plana só é gerada pela Mv, e a SesionIncremental guarda a AST de objetos.
+        if (astPlana && (motor != Motor.PILA || vigilar)) usoIncorrecto();
+        // A análise paralela precisa de todos os tokens de uma vez, num BufferTokens.
+        if (paralelo && (flujo || vigilar || astPlana)) usoIncorrecto();
+        // A Tuberia lê o arquivo em fluxo e gera bytecode para a Mv a partir da AST de objetos.
+        if (tuberia && (motor != Motor.PILA || flujo || vigilar || astPlana || paralelo)) usoIncorrecto();
+        // A execução por sentença lê o arquivo em fluxo e executa cada trecho na Mv.
+        if (porSentencia && (motor != Motor.PILA || vigilar || astPlana || paralelo || tuberia)) usoIncorrecto();
+        // O CompiladorUnaPasada escreve bytecode da Mv e volta aos tokens do incremento de um 'para' (BufferTokens).
+        if (unaPasada && (motor != Motor.PILA || flujo || vigilar || astPlana || paralelo || tuberia || porSentencia)) {
+            usoIncorrecto();
+        }
+        if (vigilar) {
+            vigilarArchivo(Paths.get(ruta != null ? ruta : "teste.txt"));
         } else {
-            ejecutarArchivo("teste.txt");
+            ejecutarArchivo(ruta != null ? ruta : "teste.txt");
+        }
+    }
+
+    private static void usoIncorrecto() {
+        System.out.println("Uso: jlox [opciones] [script]   (sin script, ejecuta teste.txt)");
+        System.out.println("  --motor=pila       VM de pila (por defecto)");
+        System.out.println("  --motor=clausuras  ejecuta la AST verificada como closures tipadas");
+        System.out.println("  --motor=registros  VM de registros");
+        System.out.println("  --sin-jit          la VM de pila solo interpreta, sin compilar los lazos calientes");
+        System.out.println("  --flujo            el parser pide los tokens al escáner bajo demanda, sin listarlos");
+        System.out.println("  --vigilar          vuelve a ejecutar el script cada vez que se guarda, reanalizando solo lo editado");
+        System.out.println("  --ast-plana        guarda la AST en arrays planos");
+        System.out.println("  --paralelo         analiza las declaraciones de nivel superior en paralelo");
+        System.out.println("  --tuberia          las cuatro fases al mismo tiempo, en hilos unidos por colas");
+        System.out.println("  --por-sentencia    ejecuta cada declaración de nivel superior en cuanto se compila");
+        System.out.println("  --una-pasada       compila de los tokens al bytecode en una sola pasada, sin AST");
+        System.out.println("--ast-plana, --tuberia, --por-sentencia y --una-pasada solo usan la VM de pila; --vigilar no se");
+        System.out.println("combina con ellas ni con --paralelo; --flujo no se combina con --paralelo, --tuberia ni --una-pasada.");
+        System.exit(64);
+    }
+
+    private static void vigilarArchivo(Path archivo) throws IOException {
+        byte[] texto = Files.readAllBytes(archivo);
+        FileTime modificado = Files.getLastModifiedTime(archivo);
+        SesionIncremental sesion = new SesionIncremental(texto);
+        ejecutar(sesion);
+
+        while (true) {
+            try {
+                Thread.sleep(INTERVALO_VIGILANCIA);
+            } catch (InterruptedException e) {
+                return;
+            }
+            FileTime ahora = Files.getLastModifiedTime(archivo);
+            if (ahora.equals(modificado)) continue;
+            modificado = ahora;
+            byte[] nuevo = Files.readAllBytes(archivo);
+
+            // A edição é o trecho entre o maior prefixo e o maior sufixo comuns ao texto antigo e ao novo.
+            int prefijo = 0;
+            int limite = Math.min(texto.length, nuevo.length);
+            while (prefijo < limite && texto[prefijo] == nuevo[prefijo]) prefijo++;
+            int sufijo = 0;
+            while (sufijo < limite - prefijo
+                    && texto[texto.length - 1 - sufijo] == nuevo[nuevo.length - 1 - sufijo]) sufijo++;
+            if (prefijo == texto.length && texto.length == nuevo.length) continue;
+
+            sesion.editar(prefijo, texto.length - prefijo - sufijo,
+                    Arrays.copyOfRange(nuevo, prefijo, nuevo.length - sufijo));
+            texto = nuevo;
+            System.out.println(">> Cambio en " + archivo + ": " + sesion.reanalizadas() + " de "
+                    + sesion.totalSentencias() + " sentencias analizadas de nuevo");
+            ejecutar(sesion);
+        }
+    }
+
+    private static void ejecutar(SesionIncremental sesion) {
+        tuvoError = false;
+        tuvoErrorRuntime = false;
+        List<String> errores = sesion.errores();
+        if (!errores.isEmpty()) {
+            for (String error : errores) System.err.println(error);
+            return;
+        }
+        System.out.println(">> 2. Análisis Sintáctico: CORRECTO");
+        try {
+            ejecutar(sesion.sentencias());
+        } catch (RuntimeException e) {
+            // O script continua sendo vigiado: a próxima edição pode corrigir o erro.
+            System.err.println(e.getMessage());
+            tuvoErrorRuntime = true;
         }
     }
 
     private static void ejecutarArchivo(String ruta) throws IOException {
-        byte[] bytes = Files.readAllBytes(Paths.get(ruta));
-        ejecutar(new String(bytes, Charset.defaultCharset()));
+        if (tuberia) {
+            try (FileChannel canal = FileChannel.open(Paths.get(ruta), StandardOpenOption.READ)) {
+                ejecutar(new Tuberia(canal));
+            }
+        } else if (porSentencia) {
+            try (FileChannel canal = FileChannel.open(Paths.get(ruta), StandardOpenOption.READ)) {
+                ejecutarPorSentencia(new FlujoTokens(canal));
+            }
+        } else if (flujo) {
+            try (FileChannel canal = FileChannel.open(Paths.get(ruta), StandardOpenOption.READ)) {
+                ejecutar(new FlujoTokens(canal));
+            }
+        } else if (unaPasada) {
+            ejecutarUnaPasada(Escaner.desdeArchivo(Paths.get(ruta)));
+        } else {
+            ejecutar(Escaner.desdeArchivo(Paths.get(ruta)));
+        }
 
         if (tuvoError) System.exit(65);
         if (tuvoErrorRuntime) System.exit(70);
     }
 
-    private static void ejecutar(String fuente) {
+    private static void ejecutar(Escaner escaner) {
 
-        Escaner escaner = new Escaner(fuente);
-        List<Token> tokens = escaner.escanearTokens();
+        BufferTokens tokens = escaner.escanearTokens();
 
         System.out.println("=== 1. ANÁLISIS LÉXICO (TOKENS) ===");
-        for (Token token : tokens) {
-            System.out.println(token); //
+        for (int i = 0; i < tokens.tamanio(); i++) {
+            System.out.println(tokens.describir(i)); //
         }
         System.out.println("===================================");
 
-        if (tokens.size() == 1 && !tuvoError) {
-            error(tokens.get(0), "El archivo de código fuente está vacío o no contiene código válido.");
+        if (tokens.tamanio() == 1 && !tuvoError) {
+            error(tokens.token(0), "El archivo de código fuente está vacío o no contiene código válido.");
             return;
         }
 
         if (tuvoError) return;
 
+        analizarYEjecutar(tokens);
+    }
+
+    // Mesmos erros e mesma saída que ejecutar(Escaner), sem a listagem de tokens: as duas análises terminam juntas,
+    // mas o erro de tipo só é reportado depois da linha da análise sintática.
+    private static void ejecutarUnaPasada(Escaner escaner) {
+        BufferTokens tokens = escaner.escanearTokens();
+        if (tokens.tamanio() == 1 && !tuvoError) {
+            error(tokens.token(0), "El archivo de código fuente está vacío o no contiene código válido.");
+            return;
+        }
+        if (tuvoError) return;
+
+        CompiladorUnaPasada compilador = new CompiladorUnaPasada(tokens);
+        Fragmento fragmento = compilador.compilar();
+        if (tuvoError) return;
+        System.out.println(">> 2. Análisis Sintáctico: CORRECTO");
+        if (compilador.reportarErrorDeTipo()) return;
+        System.out.println(">> 3. Análisis Semántico: CORRECTO");
+        new Mv(jit).interpretar(fragmento);
+    }
+
+    // Os erros léxicos aparecem durante a análise sintática, à medida que o parser puxa os tokens.
+    private static void ejecutar(FlujoTokens tokens) {
+        if (tokens.tipo(0) == TokenType.FIN_DE_ARCHIVO && !tuvoError) {
+            error(tokens.token(0), "El archivo de código fuente está vacío o no contiene código válido.");
+            return;
+        }
+
+        analizarYEjecutar(tokens);
+    }
+
+    // Mesma ordem de saída que ejecutar(Escaner): os erros de cada fase só são reportados se as anteriores não
+    // tiveram nenhum.
+    private static void ejecutar(Tuberia tuberia) {
+        Fragmento fragmento;
+        try {
+            fragmento = tuberia.compilar();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        if (tuberia.reportarErrores(Tuberia.LEXICA)) return;
+        if (tuberia.vacio()) {
+            error(tuberia.finDeArchivo(), "El archivo de código fuente está vacío o no contiene código válido.");
+            return;
+        }
+        if (tuberia.reportarErrores(Tuberia.SINTACTICA)) return;
+        System.out.println(">> 2. Análisis Sintáctico: CORRECTO");
+        if (tuberia.reportarErrores(Tuberia.SEMANTICA)) return;
+        System.out.println(">> 3. Análisis Semántico: CORRECTO");
+
+        if (tuberia.errorDeGeneracion() != null) {
+            System.err.println("Erro de Compilação na VM: " + tuberia.errorDeGeneracion());
+            return;
+        }
+        new Mv(jit).interpretar(fragmento);
+    }
+
+    // Cada declaração é descartada depois de executada: a memória não cresce com o tamanho do programa, só com o
+    // número de nomes. Depois do primeiro erro de compilação nada mais é executado, mas a análise sintática segue até
+    // o fim para reportar os demais erros, como em --flujo.
+    private static void ejecutarPorSentencia(FlujoTokens tokens) {
+        if (tokens.tipo(0) == TokenType.FIN_DE_ARCHIVO && !tuvoError) {
+            error(tokens.token(0), "El archivo de código fuente está vacío o no contiene código válido.");
+            return;
+        }
+
+        AnalizadorSintactico analizador = new AnalizadorSintactico(tokens);
+        AnalizadorSemantico semantico = new AnalizadorSemantico();
+        GeneradorByteCode generador = new GeneradorByteCode(new Fragmento());
+        Mv vm = new Mv(jit);
+        Sentencia sentencia;
+        while ((sentencia = analizador.siguienteSentencia()) != null) {
+            if (tuvoError) continue;
+            try {
+                semantico.analizar(sentencia);
+            } catch (AnalizadorSemantico.ErrorDeTipo error) {
+                continue;
+            }
+
+            Fragmento segmento;
+            try {
+                segmento = generador.generarSegmento(sentencia);
+            } catch (Exception e) {
+                System.err.println("Erro de Compilação na VM: " + e.getMessage());
+                return;
+            }
+            vm.continuar(segmento);
+        }
+    }
+
+    private static void analizarYEjecutar(FuenteTokens tokens) {
         AnalizadorSintactico analizador = new AnalizadorSintactico(tokens);
-        List<Sentencia> sentencias = analizador.analizar();
+        if (astPlana) {
+            ejecutar(analizador.analizarPlano());
+            return;
+        }
+        List<Sentencia> sentencias = paralelo ? analizador.analizarParalelo() : analizador.analizar();
 
         if (tuvoError) return;
         System.out.println(">> 2. Análisis Sintáctico: CORRECTO");
+        ejecutar(sentencias);
+    }
 
+    private static void ejecutar(List<Sentencia> sentencias) {
         AnalizadorSemantico semantico = new AnalizadorSemantico();
         try {
             semantico.analizar(sentencias);
@@ -69,8 +319,30 @@ public class Lox {
         if (tuvoError) return;
         System.out.println(">> 3. Análisis Semántico: CORRECTO");
 
-        Mv vm = new Mv();
-        vm.interpretar(sentencias);
+        if (motor == Motor.CLAUSURAS) {
+            new MotorClausuras().interpretar(sentencias);
+        } else if (motor == Motor.REGISTROS) {
+            new MvRegistros().interpretar(sentencias);
+        } else {
+            Mv vm = new Mv(jit);
+            vm.interpretar(sentencias);
+        }
+    }
+
+    private static void ejecutar(ArbolPlano arbol) {
+        if (tuvoError) return;
+        System.out.println(">> 2. Análisis Sintáctico: CORRECTO");
+
+        AnalizadorSemantico semantico = new AnalizadorSemantico();
+        try {
+            semantico.analizar(arbol);
+        } catch (AnalizadorSemantico.ErrorDeTipo error) {
+            return;
+        }
+
+        if (tuvoError) return;
+        System.out.println(">> 3. Análisis Semántico: CORRECTO");
+        new Mv(jit).interpretar(arbol);
     }
 
     static void error(int linea, String mensaje) {
@@ -85,9 +357,17 @@ public class Lox {
         }
     }
 
-    private static void reportar(int linea, String donde, String mensaje) {
-        System.err.println("[línea " + linea + "] Error" + donde + ": " + mensaje);
+    static void reportar(int linea, String donde, String mensaje) {
+        if (receptor != null) {
+            receptor.error(linea, donde, mensaje);
+            return;
+        }
+        System.err.println(formatearError(linea, donde, mensaje));
         tuvoError = true;
     }
 
+    static String formatearError(int linea, String donde, String mensaje) {
+        return "[línea " + linea + "] Error" + donde + ": " + mensaje;
+    }
+
 }
@@ -0,0 +1,531 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Propósito: Back-end alternativo à Mv. Traduz a AST já verificada, uma única vez, num grafo de nós (closures)
+ * já ligados entre si, e executa o programa chamando esses nós diretamente.
+ * Detalhes Chave: Implementa Expr.Visitante<Nodo> e Sentencia.Visitante<Accion>. Cada nó guarda os seus operandos
+ * resolvidos (filhos, slot da variável, valor da constante) e um caminho rápido tipado escolhido pelo Tipo que o
+ * AnalizadorSemantico registrou em Expr.tipo: ENTERO avalia com entero() em long, FLOTANTE com flotante() em double,
+ * BOOLEANO com booleano(). Assim o JIT da JVM vê chamadas virtuais monomórficas em cada ponto, em vez do switch
+ * megamórfico da Mv. Variáveis locais e globais ficam em slots (long para números/booleanos, Object para cadenas),
+ * com a mesma política de desbordamento e os mesmos erros de execução da Mv.
+ */
+
+public class MotorClausuras implements Expr.Visitante<MotorClausuras.Nodo>, Sentencia.Visitante<MotorClausuras.Accion> {
+
+    static final class Marco {
+        long[] locales;
+        Object[] localesRef;
+        long[] globales = new long[0];
+        Object[] globalesRef = new Object[0];
+        boolean[] definidas = new boolean[0];
+    }
+
+    abstract static class Nodo {
+        long entero(Marco m) {
+            throw new IllegalStateException("El nodo no produce un entero.");
+        }
+
+        double flotante(Marco m) {
+            throw new IllegalStateException("El nodo no produce un flotante.");
+        }
+
+        boolean booleano(Marco m) {
+            throw new IllegalStateException("El nodo no produce un booleano.");
+        }
+
+        abstract Object objeto(Marco m);
+    }
+
+    abstract static class NodoEntero extends Nodo {
+        @Override abstract long entero(Marco m);
+        @Override double flotante(Marco m) { return entero(m); }
+        @Override Object objeto(Marco m) { return entero(m); }
+    }
+
+    abstract static class NodoFlotante extends Nodo {
+        @Override abstract double flotante(Marco m);
+        @Override Object objeto(Marco m) { return flotante(m); }
+    }
+
+    abstract static class NodoBooleano extends Nodo {
+        @Override abstract boolean booleano(Marco m);
+        @Override Object objeto(Marco m) { return booleano(m); }
+    }
+
+    abstract static class Accion {
+        abstract void ejecutar(Marco m);
+    }
+
+    private final GeneradorByteCode.CompilerScope scope = new GeneradorByteCode.CompilerScope();
+    private final GeneradorByteCode.PorSimbolo slotsGlobales = new GeneradorByteCode.PorSimbolo();
+    private final List<String> nombresGlobales = new ArrayList<>();
+    private int maximoLocales = 0;
+    private final Marco marco = new Marco();
+
+    public MotorClausuras() {
+    }
+
+    public void interpretar(List<Sentencia> sentencias) {
+        List<Accion> programa = new ArrayList<>();
+        try {
+            for (Sentencia sent : sentencias) {
+                programa.add(compilar(sent));
+            }
+        } catch (Exception e) {
+            System.err.println("Erro de Compilação na VM: " + e.getMessage());
+            return;
+        }
+
+        prepararMarco();
+        try {
+            for (Accion accion : programa) {
+                accion.ejecutar(marco);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Erro de execução: " + e.getMessage());
+        }
+    }
+
+    private void prepararMarco() {
+        marco.locales = new long[maximoLocales];
+        marco.localesRef = new Object[maximoLocales];
+        int n = nombresGlobales.size();
+        if (marco.globales.length < n) {
+            marco.globales = Arrays.copyOf(marco.globales, n);
+            marco.globalesRef = Arrays.copyOf(marco.globalesRef, n);
+            marco.definidas = Arrays.copyOf(marco.definidas, n);
+        }
+    }
+
+    private Accion compilar(Sentencia sentencia) {
+        return sentencia.aceptar(this);
+    }
+
+    private Nodo compilar(Expr expr) {
+        if (expr.tipo == null) {
+            throw new IllegalStateException("Expresión sin tipo; el motor de closures necesita la AST verificada.");
+        }
+        return expr.aceptar(this);
+    }
+
+    private int slotGlobal(Token nombre) {
+        int slot = slotsGlobales.obtener(nombre.simbolo);
+        if (slot == -1) {
+            slot = nombresGlobales.size();
+            nombresGlobales.add(nombre.lexema);
+            slotsGlobales.poner(nombre.simbolo, slot);
+        }
+        return slot;
+    }
+
+    // --- Sentenças ---
+
+    @Override
+    public Accion visitarSentenciaDeclaracion(Sentencia.Declaracion sent) {
+        Tipo tipo = Tipo.desdeToken(sent.tipo);
+        Nodo valor;
+        if (sent.inicializador != null) {
+            valor = compilar(sent.inicializador);
+            if (tipo == Tipo.INDEFINIDO) tipo = sent.inicializador.tipo;
+        } else {
+            valor = constante(tipo, GeneradorByteCode.valorInicial(tipo));
+        }
+
+        if (scope.scopeDepth > 0) {
+            int slot = scope.locals.size();
+            scope.addLocal(sent.nombre.simbolo);
+            maximoLocales = Math.max(maximoLocales, scope.locals.size());
+            return descartar(escribirLocal(slot, tipo, valor));
+        }
+        return descartar(escribirGlobal(slotGlobal(sent.nombre), tipo, valor, true));
+    }
+
+    @Override
+    public Accion visitarSentenciaBloque(Sentencia.Bloque sent) {
+        scope.beginScope();
+        Accion[] cuerpo = new Accion[sent.sentencias.size()];
+        for (int i = 0; i < cuerpo.length; i++) {
+            cuerpo[i] = compilar(sent.sentencias.get(i));
+        }
+        scope.endScope();
+        return new Accion() {
+            @Override
+            void ejecutar(Marco m) {
+                for (Accion accion : cuerpo) accion.ejecutar(m);
+            }
+        };
+    }
+
+    @Override
+    public Accion visitarSentenciaSi(Sentencia.Si sent) {
+        Nodo condicion = compilar(sent.condicion);
+        Accion ramaSi = compilar(sent.ramaSi);
+        if (sent.ramaSino == null) {
+            return new Accion() {
+                @Override
+                void ejecutar(Marco m) {
+                    if (condicion.booleano(m)) ramaSi.ejecutar(m);
+                }
+            };
+        }
+        Accion ramaSino = compilar(sent.ramaSino);
+        return new Accion() {
+            @Override
+            void ejecutar(Marco m) {
+                if (condicion.booleano(m)) ramaSi.ejecutar(m);
+                else ramaSino.ejecutar(m);
+            }
+        };
+    }
+
+    @Override
+    public Accion visitarSentenciaMientras(Sentencia.Mientras sent) {
+        Nodo condicion = compilar(sent.condicion);
+        Accion cuerpo = compilar(sent.cuerpo);
+        return new Accion() {
+            @Override
+            void ejecutar(Marco m) {
+                while (condicion.booleano(m)) cuerpo.ejecutar(m);
+            }
+        };
+    }
+
+    @Override
+    public Accion visitarSentenciaImprimir(Sentencia.Imprimir sent) {
+        Nodo valor = compilar(sent.expresion);
+        return new Accion() {
+            @Override
+            void ejecutar(Marco m) {
+                System.out.println(valor.objeto(m));
+            }
+        };
+    }
+
+    @Override
+    public Accion visitarSentenciaExpresion(Sentencia.Expresion sent) {
+        return descartar(compilar(sent.expresion));
+    }
+
+    // Executa o nó pelo seu caminho tipado, para não criar um objeto só para descartá-lo.
+    private static Accion descartar(Nodo nodo) {
+        if (nodo instanceof NodoEntero) {
+            return new Accion() {
+                @Override void ejecutar(Marco m) { nodo.entero(m); }
+            };
+        }
+        if (nodo instanceof NodoFlotante) {
+            return new Accion() {
+                @Override void ejecutar(Marco m) { nodo.flotante(m); }
+            };
+        }
+        if (nodo instanceof NodoBooleano) {
+            return new Accion() {
+                @Override void ejecutar(Marco m) { nodo.booleano(m); }
+            };
+        }
+        return new Accion() {
+            @Override void ejecutar(Marco m) { nodo.objeto(m); }
+        };
+    }
+
+    // --- Expressões ---
+
+    @Override
+    public Nodo visitarExprLiteral(Expr.Literal expr) {
+        return constante(expr.tipo, expr.valor);
+    }
+
+    private static Nodo constante(Tipo tipo, Object valor) {
+        if (tipo == Tipo.ENTERO) {
+            long v = (Long) valor;
+            return new NodoEntero() {
+                @Override long entero(Marco m) { return v; }
+            };
+        }
+        if (tipo == Tipo.FLOTANTE) {
+            double v = (Double) valor;
+            return new NodoFlotante() {
+                @Override double flotante(Marco m) { return v; }
+            };
+        }
+        if (tipo == Tipo.BOOLEANO) {
+            boolean v = (Boolean) valor;
+            return new NodoBooleano() {
+                @Override boolean booleano(Marco m) { return v; }
+            };
+        }
+        return new Nodo() {
+            @Override Object objeto(Marco m) { return valor; }
+        };
+    }
+
+    @Override
+    public Nodo visitarExprVariable(Expr.Variable expr) {
+        int slot = scope.resolveLocal(expr.nombre.simbolo);
+        if (slot != -1) return leerLocal(slot, expr.tipo);
+        return leerGlobal(slotGlobal(expr.nombre), expr.tipo);
+    }
+
+    @Override
+    public Nodo visitarExprAsignar(Expr.Asignar expr) {
+        Nodo valor = compilar(expr.valor);
+        int slot = scope.resolveLocal(expr.nombre.simbolo);
+        if (slot != -1) return escribirLocal(slot, expr.tipo, valor);
+
+        return escribirGlobal(slotGlobal(expr.nombre), expr.tipo, valor, false);
+    }
+
+    private static void comprobarDefinida(Marco m, int slot, String nombre) {
+        if (!m.definidas[slot]) throw new RuntimeException("Variable global no definida: " + nombre);
+    }
+
+    private static Nodo leerLocal(int slot, Tipo tipo) {
+        switch (tipo) {
+            case ENTERO:
+                return new NodoEntero() {
+                    @Override long entero(Marco m) { return m.locales[slot]; }
+                };
+            case FLOTANTE:
+                return new NodoFlotante() {
+                    @Override double flotante(Marco m) { return Double.longBitsToDouble(m.locales[slot]); }
+                };
+            case BOOLEANO:
+                return new NodoBooleano() {
+                    @Override boolean booleano(Marco m) { return m.locales[slot] != 0; }
+                };
+            default:
+                return new Nodo() {
+                    @Override Object objeto(Marco m) { return m.localesRef[slot]; }
+                };
+        }
+    }
+
+    private Nodo leerGlobal(int slot, Tipo tipo) {
+        String nombre = nombresGlobales.get(slot);
+        switch (tipo) {
+            case ENTERO:
+                return new NodoEntero() {
+                    @Override long entero(Marco m) {
+                        comprobarDefinida(m, slot, nombre);
+                        return m.globales[slot];
+                    }
+                };
+            case FLOTANTE:
+                return new NodoFlotante() {
+                    @Override double flotante(Marco m) {
+                        comprobarDefinida(m, slot, nombre);
+                        return Double.longBitsToDouble(m.globales[slot]);
+                    }
+                };
+            case BOOLEANO:
+                return new NodoBooleano() {
+                    @Override boolean booleano(Marco m) {
+                        comprobarDefinida(m, slot, nombre);
+                        return m.globales[slot] != 0;
+                    }
+                };
+            default:
+                return new Nodo() {
+                    @Override Object objeto(Marco m) {
+                        comprobarDefinida(m, slot, nombre);
+                        return m.globalesRef[slot];
+                    }
+                };
+        }
+    }
+
+    private static Nodo escribirLocal(int slot, Tipo tipo, Nodo valor) {
+        switch (tipo) {
+            case ENTERO:
+                return new NodoEntero() {
+                    @Override long entero(Marco m) { return m.locales[slot] = valor.entero(m); }
+                };
+            case FLOTANTE:
+                return new NodoFlotante() {
+                    @Override double flotante(Marco m) {
+                        double v = valor.flotante(m);
+                        m.locales[slot] = Double.doubleToRawLongBits(v);
+                        return v;
+                    }
+                };
+            case BOOLEANO:
+                return new NodoBooleano() {
+                    @Override boolean booleano(Marco m) {
+                        boolean v = valor.booleano(m);
+                        m.locales[slot] = v ? 1L : 0L;
+                        return v;
+                    }
+                };
+            default:
+                return new Nodo() {
+                    @Override Object objeto(Marco m) { return m.localesRef[slot] = valor.objeto(m); }
+                };
+        }
+    }
+
+    // Declarar marca o slot como definido; atribuir exige que já esteja, como DEFINIR_GLOBAL e ASIGNAR_GLOBAL na Mv.
+    private Nodo escribirGlobal(int slot, Tipo tipo, Nodo valor, boolean declarar) {
+        String nombre = nombresGlobales.get(slot);
+        switch (tipo) {
+            case ENTERO:
+                return new NodoEntero() {
+                    @Override long entero(Marco m) {
+                        long v = valor.entero(m);
+                        definir(m, slot, nombre, declarar);
+                        return m.globales[slot] = v;
+                    }
+                };
+            case FLOTANTE:
+                return new NodoFlotante() {
+                    @Override double flotante(Marco m) {
+                        double v = valor.flotante(m);
+                        definir(m, slot, nombre, declarar);
+                        m.globales[slot] = Double.doubleToRawLongBits(v);
+                        return v;
+                    }
+                };
+            case BOOLEANO:
+                return new NodoBooleano() {
+                    @Override boolean booleano(Marco m) {
+                        boolean v = valor.booleano(m);
+                        definir(m, slot, nombre, declarar);
+                        m.globales[slot] = v ? 1L : 0L;
+                        return v;
+                    }
+                };
+            default:
+                return new Nodo() {
+                    @Override Object objeto(Marco m) {
+                        Object v = valor.objeto(m);
+                        definir(m, slot, nombre, declarar);
+                        return m.globalesRef[slot] = v;
+                    }
+                };
+        }
+    }
+
+    private static void definir(Marco m, int slot, String nombre, boolean declarar) {
+        if (declarar) m.definidas[slot] = true;
+        else comprobarDefinida(m, slot, nombre);
+    }
+
+    @Override
+    public Nodo visitarExprBinario(Expr.Binario expr) {
+        Nodo izq = compilar(expr.izquierda);
+        Nodo der = compilar(expr.derecha);
+        boolean enteros = expr.izquierda.tipo == Tipo.ENTERO && expr.derecha.tipo == Tipo.ENTERO;
+        boolean numeros = GeneradorByteCode.tipoNumerico(expr.izquierda.tipo, expr.derecha.tipo) != null;
+
+        switch (expr.operador.tipo) {
+            case MAS:
+                if (enteros) return new NodoEntero() {
+                    @Override long entero(Marco m) { return Math.addExact(izq.entero(m), der.entero(m)); }
+                };
+                if (numeros) return new NodoFlotante() {
+                    @Override double flotante(Marco m) { return izq.flotante(m) + der.flotante(m); }
+                };
+                return new Nodo() {
+                    @Override Object objeto(Marco m) { return (String) izq.objeto(m) + (String) der.objeto(m); }
+                };
+            case MENOS:
+                if (enteros) return new NodoEntero() {
+                    @Override long entero(Marco m) { return Math.subtractExact(izq.entero(m), der.entero(m)); }
+                };
+                return new NodoFlotante() {
+                    @Override double flotante(Marco m) { return izq.flotante(m) - der.flotante(m); }
+                };
+            case ASTERISCO:
+                if (enteros) return new NodoEntero() {
+                    @Override long entero(Marco m) { return Math.multiplyExact(izq.entero(m), der.entero(m)); }
+                };
+                return new NodoFlotante() {
+                    @Override double flotante(Marco m) { return izq.flotante(m) * der.flotante(m); }
+                };
+            case BARRA:
+                if (enteros) return new NodoEntero() {
+                    @Override long entero(Marco m) { return Mv.dividirEnteros(izq.entero(m), der.entero(m)); }
+                };
+                return new NodoFlotante() {
+                    @Override double flotante(Marco m) { return izq.flotante(m) / der.flotante(m); }
+                };
+            case MENOR:
+                if (enteros) return new NodoBooleano() {
+                    @Override boolean booleano(Marco m) { return izq.entero(m) < der.entero(m); }
+                };
+                return new NodoBooleano() {
+                    @Override boolean booleano(Marco m) { return izq.flotante(m) < der.flotante(m); }
+                };
+            case MENOR_IGUAL:
+                if (enteros) return new NodoBooleano() {
+                    @Override boolean booleano(Marco m) { return izq.entero(m) <= der.entero(m); }
+                };
+                return new NodoBooleano() {
+                    @Override boolean booleano(Marco m) { return !(izq.flotante(m) > der.flotante(m)); }
+                };
+            case MAYOR:
+                if (enteros) return new NodoBooleano() {
+                    @Override boolean booleano(Marco m) { return izq.entero(m) > der.entero(m); }
+                };
+                return new NodoBooleano() {
+                    @Override boolean booleano(Marco m) { return izq.flotante(m) > der.flotante(m); }
+                };
+            case MAYOR_IGUAL:
+                if (enteros) return new NodoBooleano() {
+                    @Override boolean booleano(Marco m) { return izq.entero(m) >= der.entero(m); }
+                };
+                return new NodoBooleano() {
+                    @Override boolean booleano(Marco m) { return !(izq.flotante(m) < der.flotante(m)); }
+                };
+            case IGUAL_IGUAL:
+                return igualdad(izq, der, enteros, numeros, false);
+            case EXCLAMACION_IGUAL:
+                return igualdad(izq, der, enteros, numeros, true);
+            default:
+                throw new RuntimeException("Operador desconhecido em bytecode");
+        }
+    }
+
+    private static Nodo igualdad(Nodo izq, Nodo der, boolean enteros, boolean numeros, boolean negar) {
+        if (enteros) return new NodoBooleano() {
+            @Override boolean booleano(Marco m) { return (izq.entero(m) == der.entero(m)) != negar; }
+        };
+        if (numeros) return new NodoBooleano() {
+            @Override boolean booleano(Marco m) { return (izq.flotante(m) == der.flotante(m)) != negar; }
+        };
+        return new NodoBooleano() {
+            @Override boolean booleano(Marco m) { return Objects.equals(izq.objeto(m), der.objeto(m)) != negar; }
+        };
+    }
+
+    @Override
+    public Nodo visitarExprUnario(Expr.Unario expr) {
+        Nodo derecha = compilar(expr.derecha);
+        if (expr.operador.tipo == TokenType.EXCLAMACION) {
+            return new NodoBooleano() {
+                @Override boolean booleano(Marco m) { return !derecha.booleano(m); }
+            };
+        }
+        if (expr.derecha.tipo == Tipo.ENTERO) {
+            return new NodoEntero() {
+                @Override long entero(Marco m) { return Math.negateExact(derecha.entero(m)); }
+            };
+        }
+        return new NodoFlotante() {
+            @Override double flotante(Marco m) { return -derecha.flotante(m); }
+        };
+    }
+
+    @Override
+    public Nodo visitarExprAgrupacion(Expr.Agrupacion expr) {
+        return compilar(expr.expresion);
+    }
+
+    @Override
+    public Nodo visitarExprLlamada(Expr.Llamada expr) {
+        throw new IllegalStateException("Llamada sin verificar; el AnalizadorSemantico rechaza todas las llamadas.");
+    }
+}
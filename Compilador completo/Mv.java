@@ -1,21 +1,52 @@
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Stack;
 
 /**
  * Propósito: A Máquina Virtual baseada em pilha (Stack-based Virtual Machine), responsável por executar o bytecode gerado.
- * Detalhes Chave: Possui uma stack (pilha) para operações e um mapa (globals) para variáveis globais. O método run() é
- * o loop principal que lê e executa cada OpCode, manipulando a pilha e o ponteiro de instrução (ip).
+ * Detalhes Chave: A pilha e as variáveis globais usam a representação de Valor: três arrays paralelos (etiquetas, bits e
+ * referências), de modo que números e booleanos nunca são alocados no heap; só cadenas ocupam o array de referências.
+ * As globais são indexadas pelo slot que o GeneradorByteCode atribui a cada nome; slots ainda não definidos têm a
+ * etiqueta INDEFINIDO. O método run() é o loop principal que lê e executa cada OpCode, com o ponteiro de instrução (ip)
+ * e o topo da pilha (sp) em variáveis locais. A pilha é dimensionada antes da execução pela profundidade máxima
+ * calculada pelo Fragmento.
+ * ENTERO é um long de 64 bits: as instruções _ENT usam aritmética verificada e desbordamento (ou divisão por zero)
+ * vira erro de execução, nunca um valor truncado.
+ * Cada LOOP conta os saltos para trás; quando passa de CompiladorJit.UMBRAL, o laço é traduzido para bytecode da JVM
+ * e as próximas iterações rodam no código compilado, que volta para run() no ip de saída do laço. Se as etiquetas
+ * observadas na compilação não se confirmarem numa entrada, o laço continua no interpretador.
+ * O IGUAL genérico, a única instrução genérica que o gerador emite (para cadenas, booleanos e nulo), se reescreve no
+ * código depois de executar para a variante _RAPIDO das etiquetas vistas (acelerar); se a guarda da variante falhar,
+ * a instrução volta a ser IGUAL (desacelerar).
+ * continuar() executa um Fragmento depois do outro na mesma Mv, mantendo as globais (execução em fluxo).
  */
 
 public class Mv {
+    private static final int TAMANIO_INICIAL_PILA = 256;
+
     private Fragmento fragmento;
-    private final Stack<Object> stack = new Stack<>();
-    private final Map<String, Object> globals = new HashMap<>();
-    private int ip = 0;
+
+    private byte[] etiquetas = new byte[TAMANIO_INICIAL_PILA];
+    private long[] bits = new long[TAMANIO_INICIAL_PILA];
+    private Object[] refs = new Object[TAMANIO_INICIAL_PILA];
+
+    private byte[] globalEtiquetas = new byte[0];
+    private long[] globalBits = new long[0];
+    private Object[] globalRefs = new Object[0];
+
+    private byte[] constEtiquetas;
+    private long[] constBits;
+    private Object[] constRefs;
+
+    private final boolean jit;
+    private int[] contadores;
+    private CompiladorJit.Compilado[] compilados;
 
     public Mv() {
+        this(true);
+    }
+
+    public Mv(boolean jit) {
+        this.jit = jit;
     }
 
     public void interpretar(List<Sentencia> sentencias) {
@@ -28,123 +59,323 @@ public class Mv {
             System.err.println("Erro de Compilação na VM: " + e.getMessage());
             return;
         }
+        ejecutarFragmento();
+    }
 
-        this.fragmento.imprimirDisassembly();
+    // Mesmo que interpretar(List<Sentencia>), a partir da AST plana (--ast-plana).
+    public void interpretar(ArbolPlano arbol) {
+        this.fragmento = new Fragmento();
+        GeneradorByteCode generador = new GeneradorByteCode(this.fragmento);
 
-        this.ip = 0;
-        this.stack.clear();
+        try {
+            generador.generar(arbol);
+        } catch (Exception e) {
+            System.err.println("Erro de Compilação na VM: " + e.getMessage());
+            return;
+        }
+        ejecutarFragmento();
+    }
+
+    // Executa um Fragmento já gerado (pela Tuberia ou pelo CompiladorUnaPasada).
+    public void interpretar(Fragmento fragmento) {
+        this.fragmento = fragmento;
+        ejecutarFragmento();
+    }
+
+    // Executa mais um trecho de código (GeneradorByteCode.generarSegmento()), sem disassembly, com as globais
+    // deixadas pelos trechos anteriores.
+    public void continuar(Fragmento fragmento) {
+        this.fragmento = fragmento;
+        preparar();
+        run();
+    }
+
+    private void ejecutarFragmento() {
+        this.fragmento.imprimirDisassembly();
+        preparar();
         run();
     }
 
+    private void preparar() {
+        prepararPila(this.fragmento.profundidadMaxima());
+        prepararGlobales(this.fragmento.globales.size());
+        cargarConstantes();
+        contadores = new int[this.fragmento.tamanio()];
+        compilados = new CompiladorJit.Compilado[this.fragmento.tamanio()];
+    }
+
     private void run() {
-        if (fragmento == null || fragmento.codigo.isEmpty()) return;
+        if (fragmento == null || fragmento.tamanio() == 0) return;
 
-        while (ip < fragmento.codigo.size()) {
-            OpCode instruccion = fragmento.codigo.get(ip);
-            Integer operando = fragmento.operandos.get(ip);
-            ip++;
+        final int[] codigo = fragmento.codigo;
+        final int fin = fragmento.tamanio();
+        final byte[] etiquetas = this.etiquetas;
+        final long[] bits = this.bits;
+        final Object[] refs = this.refs;
+        final byte[] globalEtiquetas = this.globalEtiquetas;
+        final long[] globalBits = this.globalBits;
+        final Object[] globalRefs = this.globalRefs;
+        final boolean jit = this.jit;
+        final int[] contadores = this.contadores;
+        int sp = 0;
+        int ip = 0;
+
+        while (ip < fin) {
+            OpCode instruccion = OpCode.VALORES[codigo[ip++]];
 
             try {
                 switch (instruccion) {
-                    case CONSTANTE:
-                        stack.push(fragmento.constantes.get(operando));
-                        break;
-                    case SUMAR: {
-                        Object b = stack.pop();
-                        Object a = stack.pop();
-                        if (a instanceof Double && b instanceof Double) {
-                            stack.push((Double) a + (Double) b);
-                        } else if (a instanceof String || b instanceof String) {
-                            stack.push(String.valueOf(a) + String.valueOf(b));
-                        }
+                    case CONSTANTE: {
+                        int k = codigo[ip++];
+                        etiquetas[sp] = constEtiquetas[k];
+                        bits[sp] = constBits[k];
+                        refs[sp++] = constRefs[k];
                         break;
                     }
-                    case RESTAR: {
-                        double b = (Double) stack.pop();
-                        double a = (Double) stack.pop();
-                        stack.push(a - b);
+                    case SUMAR:
+                    case RESTAR:
+                    case MULTIPLICAR:
+                    case DIVIDIR:
+                        sp--;
+                        aritmeticaGenerica(instruccion, etiquetas, bits, refs, sp - 1, sp - 1, sp);
                         break;
-                    }
-                    case MULTIPLICAR: {
-                        double b = (Double) stack.pop();
-                        double a = (Double) stack.pop();
-                        stack.push(a * b);
+                    case NEGATIVO:
+                        negativoGenerico(etiquetas, bits, sp - 1, sp - 1);
                         break;
-                    }
-                    case DIVIDIR: {
-                        double b = (Double) stack.pop();
-                        double a = (Double) stack.pop();
-                        stack.push(a / b);
+                    case IGUAL:
+                        sp--;
+                        acelerar(ip - 1, etiquetas[sp - 1], etiquetas[sp]);
+                        bits[sp - 1] = sonIguales(etiquetas, bits, refs, sp - 1, sp) ? 1L : 0L;
+                        etiquetas[sp - 1] = Valor.BOOLEANO;
                         break;
-                    }
-                    case NEGATIVO:
-                        stack.push(-(Double) stack.pop());
+                    case MAYOR:
+                        sp--;
+                        bits[sp - 1] = comparar(etiquetas, bits, sp - 1, sp) > 0 ? 1L : 0L;
+                        etiquetas[sp - 1] = Valor.BOOLEANO;
                         break;
-                    case IGUAL: {
-                        Object b = stack.pop();
-                        Object a = stack.pop();
-                        stack.push(a.equals(b));
+                    case MENOR:
+                        sp--;
+                        bits[sp - 1] = comparar(etiquetas, bits, sp - 1, sp) < 0 ? 1L : 0L;
+                        etiquetas[sp - 1] = Valor.BOOLEANO;
                         break;
-                    }
-                    case MAYOR: {
-                        double b = (Double) stack.pop();
-                        double a = (Double) stack.pop();
-                        stack.push(a > b);
+                    case NOT:
+                        bits[sp - 1] = esFalso(etiquetas[sp - 1], bits[sp - 1]) ? 1L : 0L;
+                        etiquetas[sp - 1] = Valor.BOOLEANO;
                         break;
-                    }
-                    case MENOR: {
-                        double b = (Double) stack.pop();
-                        double a = (Double) stack.pop();
-                        stack.push(a < b);
+                    case SUMAR_ENT:
+                        sp--;
+                        bits[sp - 1] = Math.addExact(bits[sp - 1], bits[sp]);
+                        break;
+                    case RESTAR_ENT:
+                        sp--;
+                        bits[sp - 1] = Math.subtractExact(bits[sp - 1], bits[sp]);
+                        break;
+                    case MULTIPLICAR_ENT:
+                        sp--;
+                        bits[sp - 1] = Math.multiplyExact(bits[sp - 1], bits[sp]);
+                        break;
+                    case DIVIDIR_ENT:
+                        sp--;
+                        bits[sp - 1] = dividirEnteros(bits[sp - 1], bits[sp]);
+                        break;
+                    case NEGATIVO_ENT:
+                        bits[sp - 1] = Math.negateExact(bits[sp - 1]);
+                        break;
+                    case IGUAL_ENT:
+                        sp--;
+                        bits[sp - 1] = bits[sp - 1] == bits[sp] ? 1L : 0L;
+                        etiquetas[sp - 1] = Valor.BOOLEANO;
+                        break;
+                    case MAYOR_ENT:
+                        sp--;
+                        bits[sp - 1] = bits[sp - 1] > bits[sp] ? 1L : 0L;
+                        etiquetas[sp - 1] = Valor.BOOLEANO;
+                        break;
+                    case MENOR_ENT:
+                        sp--;
+                        bits[sp - 1] = bits[sp - 1] < bits[sp] ? 1L : 0L;
+                        etiquetas[sp - 1] = Valor.BOOLEANO;
+                        break;
+                    case SUMAR_FLO:
+                        sp--;
+                        bits[sp - 1] = Double.doubleToRawLongBits(
+                                Double.longBitsToDouble(bits[sp - 1]) + Double.longBitsToDouble(bits[sp]));
+                        break;
+                    case RESTAR_FLO:
+                        sp--;
+                        bits[sp - 1] = Double.doubleToRawLongBits(
+                                Double.longBitsToDouble(bits[sp - 1]) - Double.longBitsToDouble(bits[sp]));
+                        break;
+                    case MULTIPLICAR_FLO:
+                        sp--;
+                        bits[sp - 1] = Double.doubleToRawLongBits(
+                                Double.longBitsToDouble(bits[sp - 1]) * Double.longBitsToDouble(bits[sp]));
+                        break;
+                    case DIVIDIR_FLO:
+                        sp--;
+                        bits[sp - 1] = Double.doubleToRawLongBits(
+                                Double.longBitsToDouble(bits[sp - 1]) / Double.longBitsToDouble(bits[sp]));
+                        break;
+                    case NEGATIVO_FLO:
+                        bits[sp - 1] = Double.doubleToRawLongBits(-Double.longBitsToDouble(bits[sp - 1]));
+                        break;
+                    case IGUAL_FLO:
+                        sp--;
+                        bits[sp - 1] = Double.longBitsToDouble(bits[sp - 1]) == Double.longBitsToDouble(bits[sp]) ? 1L : 0L;
+                        etiquetas[sp - 1] = Valor.BOOLEANO;
+                        break;
+                    case MAYOR_FLO:
+                        sp--;
+                        bits[sp - 1] = Double.longBitsToDouble(bits[sp - 1]) > Double.longBitsToDouble(bits[sp]) ? 1L : 0L;
+                        etiquetas[sp - 1] = Valor.BOOLEANO;
+                        break;
+                    case MENOR_FLO:
+                        sp--;
+                        bits[sp - 1] = Double.longBitsToDouble(bits[sp - 1]) < Double.longBitsToDouble(bits[sp]) ? 1L : 0L;
+                        etiquetas[sp - 1] = Valor.BOOLEANO;
+                        break;
+                    case ENTERO_A_FLOTANTE:
+                        bits[sp - 1] = Double.doubleToRawLongBits((double) bits[sp - 1]);
+                        etiquetas[sp - 1] = Valor.FLOTANTE;
+                        break;
+                    case CONCATENAR:
+                        sp--;
+                        refs[sp - 1] = (String) refs[sp - 1] + (String) refs[sp];
+                        break;
+                    case NOT_BOOL:
+                        bits[sp - 1] ^= 1L;
+                        break;
+                    case IGUAL_BITS_RAPIDO:
+                        sp--;
+                        if (etiquetas[sp - 1] == etiquetas[sp] && etiquetas[sp] <= Valor.ENTERO) {
+                            bits[sp - 1] = bits[sp - 1] == bits[sp] ? 1L : 0L;
+                        } else {
+                            desacelerar(ip - 1);
+                            bits[sp - 1] = sonIguales(etiquetas, bits, refs, sp - 1, sp) ? 1L : 0L;
+                        }
+                        etiquetas[sp - 1] = Valor.BOOLEANO;
+                        break;
+                    case IGUAL_REF_RAPIDO:
+                        sp--;
+                        if (etiquetas[sp - 1] == Valor.REFERENCIA && etiquetas[sp] == Valor.REFERENCIA) {
+                            bits[sp - 1] = refs[sp - 1].equals(refs[sp]) ? 1L : 0L;
+                        } else {
+                            desacelerar(ip - 1);
+                            bits[sp - 1] = sonIguales(etiquetas, bits, refs, sp - 1, sp) ? 1L : 0L;
+                        }
+                        etiquetas[sp - 1] = Valor.BOOLEANO;
                         break;
-                    }
                     case IMPRIMIR:
-                        System.out.println(stack.pop());
+                        sp--;
+                        imprimir(etiquetas[sp], bits[sp], refs[sp]);
                         break;
                     case DEFINIR_GLOBAL: {
-                        String name = (String) fragmento.constantes.get(operando);
-                        globals.put(name, stack.pop());
+                        int slot = codigo[ip++];
+                        sp--;
+                        globalEtiquetas[slot] = etiquetas[sp];
+                        globalBits[slot] = bits[sp];
+                        globalRefs[slot] = refs[sp];
                         break;
                     }
                     case LEER_GLOBAL: {
-                        String name = (String) fragmento.constantes.get(operando);
-                        if (!globals.containsKey(name)) {
-                            throw new RuntimeException("Variable global no definida: " + name);
+                        int slot = codigo[ip++];
+                        if (globalEtiquetas[slot] == Valor.INDEFINIDO) {
+                            throw new RuntimeException("Variable global no definida: " + fragmento.globales.get(slot));
                         }
-                        stack.push(globals.get(name));
+                        etiquetas[sp] = globalEtiquetas[slot];
+                        bits[sp] = globalBits[slot];
+                        refs[sp++] = globalRefs[slot];
                         break;
                     }
                     case ASIGNAR_GLOBAL: {
-                        String name = (String) fragmento.constantes.get(operando);
-                        if (!globals.containsKey(name)) {
-                            throw new RuntimeException("Variable global no definida: " + name);
+                        int slot = codigo[ip++];
+                        if (globalEtiquetas[slot] == Valor.INDEFINIDO) {
+                            throw new RuntimeException("Variable global no definida: " + fragmento.globales.get(slot));
                         }
-                        globals.put(name, stack.peek());
+                        globalEtiquetas[slot] = etiquetas[sp - 1];
+                        globalBits[slot] = bits[sp - 1];
+                        globalRefs[slot] = refs[sp - 1];
                         break;
                     }
                     case LEER_LOCAL: {
-                        stack.push(stack.get(operando));
+                        int slot = codigo[ip++];
+                        etiquetas[sp] = etiquetas[slot];
+                        bits[sp] = bits[slot];
+                        refs[sp++] = refs[slot];
                         break;
                     }
                     case ASIGNAR_LOCAL: {
-                        stack.set(operando, stack.peek());
+                        int slot = codigo[ip++];
+                        etiquetas[slot] = etiquetas[sp - 1];
+                        bits[slot] = bits[sp - 1];
+                        refs[slot] = refs[sp - 1];
                         break;
                     }
                     case POP: {
-                        stack.pop();
+                        refs[--sp] = null;
+                        break;
+                    }
+                    case SALTAR_SI_NO_MENOR_LOCAL: {
+                        if (bits[codigo[ip]] < constBits[codigo[ip + 1]]) ip += 3;
+                        else ip = codigo[ip + 2];
+                        break;
+                    }
+                    case SALTAR_SI_NO_MAYOR_LOCAL: {
+                        if (bits[codigo[ip]] > constBits[codigo[ip + 1]]) ip += 3;
+                        else ip = codigo[ip + 2];
+                        break;
+                    }
+                    case SALTAR_SI_NO_MENOR_GLOBAL: {
+                        int slot = codigo[ip];
+                        if (globalEtiquetas[slot] == Valor.INDEFINIDO) {
+                            throw new RuntimeException("Variable global no definida: " + fragmento.globales.get(slot));
+                        }
+                        if (globalBits[slot] < constBits[codigo[ip + 1]]) ip += 3;
+                        else ip = codigo[ip + 2];
+                        break;
+                    }
+                    case SALTAR_SI_NO_MAYOR_GLOBAL: {
+                        int slot = codigo[ip];
+                        if (globalEtiquetas[slot] == Valor.INDEFINIDO) {
+                            throw new RuntimeException("Variable global no definida: " + fragmento.globales.get(slot));
+                        }
+                        if (globalBits[slot] > constBits[codigo[ip + 1]]) ip += 3;
+                        else ip = codigo[ip + 2];
+                        break;
+                    }
+                    case INCREMENTAR_LOCAL: {
+                        int slot = codigo[ip];
+                        bits[slot] = Math.addExact(bits[slot], constBits[codigo[ip + 1]]);
+                        ip += 2;
+                        break;
+                    }
+                    case INCREMENTAR_GLOBAL: {
+                        int slot = codigo[ip];
+                        if (globalEtiquetas[slot] == Valor.INDEFINIDO) {
+                            throw new RuntimeException("Variable global no definida: " + fragmento.globales.get(slot));
+                        }
+                        globalBits[slot] = Math.addExact(globalBits[slot], constBits[codigo[ip + 1]]);
+                        ip += 2;
                         break;
                     }
                     case SALTAR_SI_FALSO: {
-                        Boolean condicion = (Boolean) stack.pop();
-                        if (!condicion) ip = operando;
+                        int destino = codigo[ip++];
+                        if (bits[--sp] == 0) ip = destino;
                         break;
                     }
                     case SALTAR: {
-                        ip = operando;
+                        ip = codigo[ip];
                         break;
                     }
                     case LOOP: {
-                        ip = operando;
+                        if (jit && ++contadores[ip] >= CompiladorJit.UMBRAL) {
+                            int salida = ejecutarCompilado(ip, sp);
+                            if (salida >= 0) {
+                                ip = salida;
+                                break;
+                            }
+                        }
+                        ip = codigo[ip];
                         break;
                     }
                     case RETORNAR:
@@ -156,4 +387,165 @@ public class Mv {
         }
     }
 
+    // Recebe o offset do operando do LOOP; o laço vai do destino dele até a instrução seguinte.
+    // Devolve o ip de saída, ou -1 para o interpretador seguir no destino do LOOP.
+    private int ejecutarCompilado(int operando, int sp) {
+        CompiladorJit.Compilado compilado = compilados[operando];
+        if (compilado == null) {
+            compilado = CompiladorJit.compilar(fragmento, fragmento.codigo[operando], operando + 1, sp,
+                    etiquetas, globalEtiquetas);
+            if (compilado == null) {
+                contadores[operando] = Integer.MIN_VALUE;
+                return -1;
+            }
+            compilados[operando] = compilado;
+        }
+        return compilado.entrar(etiquetas, bits, globalEtiquetas, globalBits);
+    }
+
+    // Reescreve o IGUAL em offset para a variante _RAPIDO das etiquetas que acabou de ver, se houver uma.
+    private void acelerar(int offset, byte ea, byte eb) {
+        if (ea != eb) return;
+        if (ea == Valor.REFERENCIA) {
+            fragmento.codigo[offset] = OpCode.IGUAL_REF_RAPIDO.ordinal();
+        } else if (ea <= Valor.ENTERO) {
+            // NULO, BOOLEANO e ENTERO são iguais quando os bits são iguais.
+            fragmento.codigo[offset] = OpCode.IGUAL_BITS_RAPIDO.ordinal();
+        }
+    }
+
+    // A guarda da variante rápida falhou: a instrução volta a ser IGUAL.
+    private void desacelerar(int offset) {
+        fragmento.codigo[offset] = OpCode.IGUAL.ordinal();
+    }
+
+    // Operações genéricas, usadas quando o gerador não conhece os tipos. Dois ENTERO ficam em long
+    // (com a mesma política de desbordamento das instruções _ENT); qualquer FLOTANTE promove para double.
+    // Recebem os arrays de valores e os índices (destino d, operandos i e j) para servirem também à MvRegistros.
+    static void aritmeticaGenerica(OpCode op, byte[] etiquetas, long[] bits, Object[] refs, int d, int i, int j) {
+        byte ea = etiquetas[i];
+        byte eb = etiquetas[j];
+        if (op == OpCode.SUMAR && (ea == Valor.REFERENCIA || eb == Valor.REFERENCIA)) {
+            refs[d] = String.valueOf(Valor.decodificar(ea, bits[i], refs[i]))
+                    + String.valueOf(Valor.decodificar(eb, bits[j], refs[j]));
+            etiquetas[d] = Valor.REFERENCIA;
+            return;
+        }
+        if (!Valor.esNumero(ea) || !Valor.esNumero(eb)) {
+            throw new RuntimeException("Los operandos deben ser números.");
+        }
+        if (ea == Valor.ENTERO && eb == Valor.ENTERO) {
+            long x = bits[i];
+            long y = bits[j];
+            switch (op) {
+                case SUMAR: bits[d] = Math.addExact(x, y); break;
+                case RESTAR: bits[d] = Math.subtractExact(x, y); break;
+                case MULTIPLICAR: bits[d] = Math.multiplyExact(x, y); break;
+                default: bits[d] = dividirEnteros(x, y); break;
+            }
+            etiquetas[d] = Valor.ENTERO;
+            return;
+        }
+        double x = Valor.comoDouble(ea, bits[i]);
+        double y = Valor.comoDouble(eb, bits[j]);
+        double r;
+        switch (op) {
+            case SUMAR: r = x + y; break;
+            case RESTAR: r = x - y; break;
+            case MULTIPLICAR: r = x * y; break;
+            default: r = x / y; break;
+        }
+        bits[d] = Double.doubleToRawLongBits(r);
+        etiquetas[d] = Valor.FLOTANTE;
+    }
+
+    static void negativoGenerico(byte[] etiquetas, long[] bits, int d, int i) {
+        if (etiquetas[i] == Valor.ENTERO) {
+            bits[d] = Math.negateExact(bits[i]);
+        } else if (etiquetas[i] == Valor.FLOTANTE) {
+            bits[d] = Double.doubleToRawLongBits(-Double.longBitsToDouble(bits[i]));
+        } else {
+            throw new RuntimeException("El operando debe ser un número.");
+        }
+        etiquetas[d] = etiquetas[i];
+    }
+
+    static int comparar(byte[] etiquetas, long[] bits, int i, int j) {
+        byte ea = etiquetas[i];
+        byte eb = etiquetas[j];
+        if (!Valor.esNumero(ea) || !Valor.esNumero(eb)) {
+            throw new RuntimeException("Los operandos deben ser números.");
+        }
+        if (ea == Valor.ENTERO && eb == Valor.ENTERO) return Long.compare(bits[i], bits[j]);
+        double x = Valor.comoDouble(ea, bits[i]);
+        double y = Valor.comoDouble(eb, bits[j]);
+        return x < y ? -1 : (x > y ? 1 : 0);
+    }
+
+    static boolean sonIguales(byte[] etiquetas, long[] bits, Object[] refs, int i, int j) {
+        byte ea = etiquetas[i];
+        byte eb = etiquetas[j];
+        if (Valor.esNumero(ea) && Valor.esNumero(eb) && ea != eb) {
+            return Valor.comoDouble(ea, bits[i]) == Valor.comoDouble(eb, bits[j]);
+        }
+        if (ea != eb) return false;
+        if (ea == Valor.REFERENCIA) return refs[i].equals(refs[j]);
+        if (ea == Valor.FLOTANTE) return Double.longBitsToDouble(bits[i]) == Double.longBitsToDouble(bits[j]);
+        return bits[i] == bits[j];
+    }
+
+    static long dividirEnteros(long a, long b) {
+        if (b == 0) throw new ArithmeticException("división entera por cero");
+        if (a == Long.MIN_VALUE && b == -1) throw new ArithmeticException("long overflow");
+        return a / b;
+    }
+
+    static boolean esFalso(byte etiqueta, long bits) {
+        return etiqueta == Valor.NULO || (etiqueta == Valor.BOOLEANO && bits == 0);
+    }
+
+    static void imprimir(byte etiqueta, long bits, Object referencia) {
+        switch (etiqueta) {
+            case Valor.ENTERO: System.out.println(bits); break;
+            case Valor.FLOTANTE: System.out.println(Double.longBitsToDouble(bits)); break;
+            case Valor.BOOLEANO: System.out.println(bits != 0); break;
+            default: System.out.println(Valor.decodificar(etiqueta, bits, referencia)); break;
+        }
+    }
+
+    private void cargarConstantes() {
+        List<Object> constantes = fragmento.constantes;
+        int n = constantes.size();
+        constEtiquetas = new byte[n];
+        constBits = new long[n];
+        constRefs = new Object[n];
+        for (int k = 0; k < n; k++) {
+            Object valor = constantes.get(k);
+            constEtiquetas[k] = Valor.etiqueta(valor);
+            constBits[k] = Valor.bits(valor);
+            if (constEtiquetas[k] == Valor.REFERENCIA) constRefs[k] = valor;
+        }
+    }
+
+    private void prepararPila(int profundidad) {
+        if (bits.length < profundidad) {
+            etiquetas = new byte[profundidad];
+            bits = new long[profundidad];
+            refs = new Object[profundidad];
+        } else {
+            Arrays.fill(refs, null);
+        }
+    }
+
+    private void prepararGlobales(int cantidad) {
+        if (globalEtiquetas.length >= cantidad) return;
+        // Cresce pelo dobro: em continuar() as globais chegam poucas por vez.
+        int anterior = globalEtiquetas.length;
+        int capacidad = Math.max(cantidad, anterior * 2);
+        globalEtiquetas = Arrays.copyOf(globalEtiquetas, capacidad);
+        globalBits = Arrays.copyOf(globalBits, capacidad);
+        globalRefs = Arrays.copyOf(globalRefs, capacidad);
+        Arrays.fill(globalEtiquetas, anterior, capacidad, Valor.INDEFINIDO);
+    }
+
 }
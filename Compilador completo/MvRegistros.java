@@ -0,0 +1,307 @@
+import java.util.List;
+
+/**
+ * Propósito: Máquina Virtual baseada em registradores, alternativa à Mv de pilha para o mesmo programa.
+ * Detalhes Chave: Executa o FragmentoRegistros gerado pelo GeneradorRegistros sobre um único banco de registradores
+ * com a representação de Valor (etiquetas, bits e referências em arrays paralelos): locais e temporários primeiro,
+ * depois as globais (começam como INDEFINIDO) e por fim as constantes, carregadas uma vez antes de executar.
+ * As instruções tipadas gravam também a etiqueta do destino, já que um mesmo temporário pode guardar tipos diferentes.
+ * As operações genéricas, a impressão e a divisão inteira são as mesmas da Mv, assim como as mensagens de erro.
+ * Selecionada com --motor=registros.
+ */
+public class MvRegistros {
+    private FragmentoRegistros fragmento;
+
+    private byte[] etiquetas;
+    private long[] bits;
+    private Object[] refs;
+
+    public MvRegistros() {
+    }
+
+    public void interpretar(List<Sentencia> sentencias) {
+        this.fragmento = new FragmentoRegistros();
+        GeneradorRegistros generador = new GeneradorRegistros(this.fragmento);
+
+        try {
+            generador.generar(sentencias);
+        } catch (Exception e) {
+            System.err.println("Erro de Compilação na VM: " + e.getMessage());
+            return;
+        }
+
+        this.fragmento.imprimirDisassembly();
+
+        prepararRegistros();
+        try {
+            run();
+        } catch (Exception e) {
+            throw new RuntimeException("Erro de execução: " + e.getMessage());
+        }
+    }
+
+    private void prepararRegistros() {
+        int total = fragmento.totalRegistros();
+        etiquetas = new byte[total];
+        bits = new long[total];
+        refs = new Object[total];
+        for (int g = 0; g < fragmento.globales.size(); g++) {
+            etiquetas[fragmento.primeraGlobal() + g] = Valor.INDEFINIDO;
+        }
+        for (int k = 0; k < fragmento.constantes.size(); k++) {
+            Object valor = fragmento.constantes.get(k);
+            int r = fragmento.primeraConstante() + k;
+            etiquetas[r] = Valor.etiqueta(valor);
+            bits[r] = Valor.bits(valor);
+            if (etiquetas[r] == Valor.REFERENCIA) refs[r] = valor;
+        }
+    }
+
+    private void run() {
+        final int[] codigo = fragmento.codigo;
+        final byte[] etiquetas = this.etiquetas;
+        final long[] bits = this.bits;
+        final Object[] refs = this.refs;
+        int ip = 0;
+
+        while (true) {
+            switch (OpCodeRegistro.VALORES[codigo[ip]]) {
+                case MOVER: {
+                    int d = codigo[ip + 1];
+                    int a = codigo[ip + 2];
+                    etiquetas[d] = etiquetas[a];
+                    bits[d] = bits[a];
+                    refs[d] = refs[a];
+                    ip += 3;
+                    break;
+                }
+                case SUMAR:
+                    Mv.aritmeticaGenerica(OpCode.SUMAR, etiquetas, bits, refs, codigo[ip + 1], codigo[ip + 2], codigo[ip + 3]);
+                    ip += 4;
+                    break;
+                case RESTAR:
+                    Mv.aritmeticaGenerica(OpCode.RESTAR, etiquetas, bits, refs, codigo[ip + 1], codigo[ip + 2], codigo[ip + 3]);
+                    ip += 4;
+                    break;
+                case MULTIPLICAR:
+                    Mv.aritmeticaGenerica(OpCode.MULTIPLICAR, etiquetas, bits, refs, codigo[ip + 1], codigo[ip + 2], codigo[ip + 3]);
+                    ip += 4;
+                    break;
+                case DIVIDIR:
+                    Mv.aritmeticaGenerica(OpCode.DIVIDIR, etiquetas, bits, refs, codigo[ip + 1], codigo[ip + 2], codigo[ip + 3]);
+                    ip += 4;
+                    break;
+                case NEGATIVO:
+                    Mv.negativoGenerico(etiquetas, bits, codigo[ip + 1], codigo[ip + 2]);
+                    ip += 3;
+                    break;
+                case NOT: {
+                    int d = codigo[ip + 1];
+                    int a = codigo[ip + 2];
+                    bits[d] = Mv.esFalso(etiquetas[a], bits[a]) ? 1L : 0L;
+                    etiquetas[d] = Valor.BOOLEANO;
+                    ip += 3;
+                    break;
+                }
+                case IGUAL: {
+                    int d = codigo[ip + 1];
+                    bits[d] = Mv.sonIguales(etiquetas, bits, refs, codigo[ip + 2], codigo[ip + 3]) ? 1L : 0L;
+                    etiquetas[d] = Valor.BOOLEANO;
+                    ip += 4;
+                    break;
+                }
+                case MAYOR: {
+                    int d = codigo[ip + 1];
+                    bits[d] = Mv.comparar(etiquetas, bits, codigo[ip + 2], codigo[ip + 3]) > 0 ? 1L : 0L;
+                    etiquetas[d] = Valor.BOOLEANO;
+                    ip += 4;
+                    break;
+                }
+                case MENOR: {
+                    int d = codigo[ip + 1];
+                    bits[d] = Mv.comparar(etiquetas, bits, codigo[ip + 2], codigo[ip + 3]) < 0 ? 1L : 0L;
+                    etiquetas[d] = Valor.BOOLEANO;
+                    ip += 4;
+                    break;
+                }
+                case SUMAR_ENT: {
+                    int d = codigo[ip + 1];
+                    bits[d] = Math.addExact(bits[codigo[ip + 2]], bits[codigo[ip + 3]]);
+                    etiquetas[d] = Valor.ENTERO;
+                    ip += 4;
+                    break;
+                }
+                case RESTAR_ENT: {
+                    int d = codigo[ip + 1];
+                    bits[d] = Math.subtractExact(bits[codigo[ip + 2]], bits[codigo[ip + 3]]);
+                    etiquetas[d] = Valor.ENTERO;
+                    ip += 4;
+                    break;
+                }
+                case MULTIPLICAR_ENT: {
+                    int d = codigo[ip + 1];
+                    bits[d] = Math.multiplyExact(bits[codigo[ip + 2]], bits[codigo[ip + 3]]);
+                    etiquetas[d] = Valor.ENTERO;
+                    ip += 4;
+                    break;
+                }
+                case DIVIDIR_ENT: {
+                    int d = codigo[ip + 1];
+                    bits[d] = Mv.dividirEnteros(bits[codigo[ip + 2]], bits[codigo[ip + 3]]);
+                    etiquetas[d] = Valor.ENTERO;
+                    ip += 4;
+                    break;
+                }
+                case NEGATIVO_ENT: {
+                    int d = codigo[ip + 1];
+                    bits[d] = Math.negateExact(bits[codigo[ip + 2]]);
+                    etiquetas[d] = Valor.ENTERO;
+                    ip += 3;
+                    break;
+                }
+                case IGUAL_ENT: {
+                    int d = codigo[ip + 1];
+                    bits[d] = bits[codigo[ip + 2]] == bits[codigo[ip + 3]] ? 1L : 0L;
+                    etiquetas[d] = Valor.BOOLEANO;
+                    ip += 4;
+                    break;
+                }
+                case MAYOR_ENT: {
+                    int d = codigo[ip + 1];
+                    bits[d] = bits[codigo[ip + 2]] > bits[codigo[ip + 3]] ? 1L : 0L;
+                    etiquetas[d] = Valor.BOOLEANO;
+                    ip += 4;
+                    break;
+                }
+                case MENOR_ENT: {
+                    int d = codigo[ip + 1];
+                    bits[d] = bits[codigo[ip + 2]] < bits[codigo[ip + 3]] ? 1L : 0L;
+                    etiquetas[d] = Valor.BOOLEANO;
+                    ip += 4;
+                    break;
+                }
+                case SUMAR_FLO: {
+                    int d = codigo[ip + 1];
+                    bits[d] = Double.doubleToRawLongBits(flotante(bits, codigo[ip + 2]) + flotante(bits, codigo[ip + 3]));
+                    etiquetas[d] = Valor.FLOTANTE;
+                    ip += 4;
+                    break;
+                }
+                case RESTAR_FLO: {
+                    int d = codigo[ip + 1];
+                    bits[d] = Double.doubleToRawLongBits(flotante(bits, codigo[ip + 2]) - flotante(bits, codigo[ip + 3]));
+                    etiquetas[d] = Valor.FLOTANTE;
+                    ip += 4;
+                    break;
+                }
+                case MULTIPLICAR_FLO: {
+                    int d = codigo[ip + 1];
+                    bits[d] = Double.doubleToRawLongBits(flotante(bits, codigo[ip + 2]) * flotante(bits, codigo[ip + 3]));
+                    etiquetas[d] = Valor.FLOTANTE;
+                    ip += 4;
+                    break;
+                }
+                case DIVIDIR_FLO: {
+                    int d = codigo[ip + 1];
+                    bits[d] = Double.doubleToRawLongBits(flotante(bits, codigo[ip + 2]) / flotante(bits, codigo[ip + 3]));
+                    etiquetas[d] = Valor.FLOTANTE;
+                    ip += 4;
+                    break;
+                }
+                case NEGATIVO_FLO: {
+                    int d = codigo[ip + 1];
+                    bits[d] = Double.doubleToRawLongBits(-flotante(bits, codigo[ip + 2]));
+                    etiquetas[d] = Valor.FLOTANTE;
+                    ip += 3;
+                    break;
+                }
+                case IGUAL_FLO: {
+                    int d = codigo[ip + 1];
+                    bits[d] = flotante(bits, codigo[ip + 2]) == flotante(bits, codigo[ip + 3]) ? 1L : 0L;
+                    etiquetas[d] = Valor.BOOLEANO;
+                    ip += 4;
+                    break;
+                }
+                case MAYOR_FLO: {
+                    int d = codigo[ip + 1];
+                    bits[d] = flotante(bits, codigo[ip + 2]) > flotante(bits, codigo[ip + 3]) ? 1L : 0L;
+                    etiquetas[d] = Valor.BOOLEANO;
+                    ip += 4;
+                    break;
+                }
+                case MENOR_FLO: {
+                    int d = codigo[ip + 1];
+                    bits[d] = flotante(bits, codigo[ip + 2]) < flotante(bits, codigo[ip + 3]) ? 1L : 0L;
+                    etiquetas[d] = Valor.BOOLEANO;
+                    ip += 4;
+                    break;
+                }
+                case ENTERO_A_FLOTANTE: {
+                    int d = codigo[ip + 1];
+                    bits[d] = Double.doubleToRawLongBits((double) bits[codigo[ip + 2]]);
+                    etiquetas[d] = Valor.FLOTANTE;
+                    ip += 3;
+                    break;
+                }
+                case CONCATENAR: {
+                    int d = codigo[ip + 1];
+                    refs[d] = (String) refs[codigo[ip + 2]] + (String) refs[codigo[ip + 3]];
+                    etiquetas[d] = Valor.REFERENCIA;
+                    ip += 4;
+                    break;
+                }
+                case NOT_BOOL: {
+                    int d = codigo[ip + 1];
+                    bits[d] = bits[codigo[ip + 2]] ^ 1L;
+                    etiquetas[d] = Valor.BOOLEANO;
+                    ip += 3;
+                    break;
+                }
+                case IMPRIMIR: {
+                    int a = codigo[ip + 1];
+                    Mv.imprimir(etiquetas[a], bits[a], refs[a]);
+                    ip += 2;
+                    break;
+                }
+                case VERIFICAR_GLOBAL: {
+                    int r = codigo[ip + 1];
+                    if (etiquetas[r] == Valor.INDEFINIDO) {
+                        throw new RuntimeException("Variable global no definida: "
+                                + fragmento.globales.get(r - fragmento.primeraGlobal()));
+                    }
+                    ip += 2;
+                    break;
+                }
+                case SALTAR:
+                    ip = codigo[ip + 1];
+                    break;
+                case SALTAR_SI_FALSO:
+                    if (bits[codigo[ip + 1]] == 0) ip = codigo[ip + 2];
+                    else ip += 3;
+                    break;
+                case SALTAR_SI_NO_MENOR_ENT:
+                    if (bits[codigo[ip + 1]] < bits[codigo[ip + 2]]) ip += 4;
+                    else ip = codigo[ip + 3];
+                    break;
+                case SALTAR_SI_NO_MAYOR_ENT:
+                    if (bits[codigo[ip + 1]] > bits[codigo[ip + 2]]) ip += 4;
+                    else ip = codigo[ip + 3];
+                    break;
+                case SALTAR_SI_NO_MENOR_FLO:
+                    if (flotante(bits, codigo[ip + 1]) < flotante(bits, codigo[ip + 2])) ip += 4;
+                    else ip = codigo[ip + 3];
+                    break;
+                case SALTAR_SI_NO_MAYOR_FLO:
+                    if (flotante(bits, codigo[ip + 1]) > flotante(bits, codigo[ip + 2])) ip += 4;
+                    else ip = codigo[ip + 3];
+                    break;
+                case RETORNAR:
+                    return;
+            }
+        }
+    }
+
+    private static double flotante(long[] bits, int r) {
+        return Double.longBitsToDouble(bits[r]);
+    }
+}
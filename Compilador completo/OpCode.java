@@ -2,18 +2,46 @@
  * Propósito: Define a enumeração de todas as instruções (códigos de operação) que a Máquina Virtual executa.
  * Detalhes Chave: Inclui instruções para constantes (CONSTANTE), operações aritméticas/lógicas (SUMAR, NEGATIVO, IGUAL),
  * controle de fluxo (SALTAR, SALTAR_SI_FALSO, LOOP) e manipulação de variáveis (DEFINIR_GLOBAL, LEER_LOCAL).
+ * As variantes _ENT (long), _FLO (double), CONCATENAR e NOT_BOOL são emitidas quando o AnalizadorSemantico já fixou
+ * o tipo dos operandos, e a Mv as executa sem testes de tipo; ENTERO_A_FLOTANTE faz a conversão implícita.
+ * As superinstruções (SALTAR_SI_NO_*, INCREMENTAR_*) fundem sequências frequentes em laços: slot da variável,
+ * índice da constante ENTERO e, nos saltos, o destino.
+ * As variantes _RAPIDO de IGUAL nunca são emitidas pelo gerador: a Mv reescreve no lugar um IGUAL genérico depois de
+ * ver as etiquetas dos operandos, e a variante as confere (guarda) antes do caminho rápido, voltando para IGUAL se
+ * elas mudarem.
+ * Cada instrução declara quantos operandos inteiros a seguem no código do Fragmento e o seu efeito na altura da pilha.
  */
 public enum OpCode {
-    CONSTANTE,
-    SUMAR, RESTAR, MULTIPLICAR, DIVIDIR,
-    NEGATIVO, NOT,
-    IGUAL, MAYOR, MENOR,
-    IMPRIMIR,
-    SALTAR, SALTAR_SI_FALSO,
-    LOOP,
-    DEFINIR_GLOBAL, LEER_GLOBAL, ASIGNAR_GLOBAL,
-    LEER_LOCAL, ASIGNAR_LOCAL,
-    POP,
-    RETORNAR
+    CONSTANTE(1, 1),
+    SUMAR(0, -1), RESTAR(0, -1), MULTIPLICAR(0, -1), DIVIDIR(0, -1),
+    NEGATIVO(0, 0), NOT(0, 0),
+    IGUAL(0, -1), MAYOR(0, -1), MENOR(0, -1),
+    SUMAR_ENT(0, -1), RESTAR_ENT(0, -1), MULTIPLICAR_ENT(0, -1), DIVIDIR_ENT(0, -1), NEGATIVO_ENT(0, 0),
+    IGUAL_ENT(0, -1), MAYOR_ENT(0, -1), MENOR_ENT(0, -1),
+    SUMAR_FLO(0, -1), RESTAR_FLO(0, -1), MULTIPLICAR_FLO(0, -1), DIVIDIR_FLO(0, -1), NEGATIVO_FLO(0, 0),
+    IGUAL_FLO(0, -1), MAYOR_FLO(0, -1), MENOR_FLO(0, -1),
+    ENTERO_A_FLOTANTE(0, 0),
+    CONCATENAR(0, -1), NOT_BOOL(0, 0),
+    IMPRIMIR(0, -1),
+    SALTAR(1, 0), SALTAR_SI_FALSO(1, -1),
+    LOOP(1, 0),
+    DEFINIR_GLOBAL(1, -1), LEER_GLOBAL(1, 1), ASIGNAR_GLOBAL(1, 0),
+    LEER_LOCAL(1, 1), ASIGNAR_LOCAL(1, 0),
+    POP(0, -1),
+    SALTAR_SI_NO_MENOR_LOCAL(3, 0), SALTAR_SI_NO_MAYOR_LOCAL(3, 0),
+    SALTAR_SI_NO_MENOR_GLOBAL(3, 0), SALTAR_SI_NO_MAYOR_GLOBAL(3, 0),
+    INCREMENTAR_LOCAL(2, 0), INCREMENTAR_GLOBAL(2, 0),
+    IGUAL_BITS_RAPIDO(0, -1), IGUAL_REF_RAPIDO(0, -1),
+    RETORNAR(0, 0);
+
+    static final OpCode[] VALORES = values();
+
+    final int operandos;
+    final int efecto;
+
+    OpCode(int operandos, int efecto) {
+        this.operandos = operandos;
+        this.efecto = efecto;
+    }
 
 }
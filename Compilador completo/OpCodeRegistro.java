@@ -0,0 +1,38 @@
+/**
+ * Propósito: Define o conjunto de instruções da MvRegistros, a variante da máquina virtual baseada em registradores.
+ * Detalhes Chave: As instruções são de três endereços (destino, operando a, operando b) sobre o banco de registradores
+ * do quadro, onde locais, temporários, globais e constantes têm cada um o seu registrador; por isso não há
+ * CONSTANTE, LEER_* nem POP. As variantes _ENT/_FLO seguem as mesmas regras dos OpCode tipados, e as
+ * SALTAR_SI_NO_* comparam dois registradores e saltam, fundindo a condição dos laços numa só instrução.
+ * Cada instrução declara quantos operandos a seguem e quantos deles (os primeiros) são registradores; o restante
+ * é o destino de um salto.
+ */
+public enum OpCodeRegistro {
+    MOVER(2, 2),
+    SUMAR(3, 3), RESTAR(3, 3), MULTIPLICAR(3, 3), DIVIDIR(3, 3),
+    NEGATIVO(2, 2), NOT(2, 2),
+    IGUAL(3, 3), MAYOR(3, 3), MENOR(3, 3),
+    SUMAR_ENT(3, 3), RESTAR_ENT(3, 3), MULTIPLICAR_ENT(3, 3), DIVIDIR_ENT(3, 3), NEGATIVO_ENT(2, 2),
+    IGUAL_ENT(3, 3), MAYOR_ENT(3, 3), MENOR_ENT(3, 3),
+    SUMAR_FLO(3, 3), RESTAR_FLO(3, 3), MULTIPLICAR_FLO(3, 3), DIVIDIR_FLO(3, 3), NEGATIVO_FLO(2, 2),
+    IGUAL_FLO(3, 3), MAYOR_FLO(3, 3), MENOR_FLO(3, 3),
+    ENTERO_A_FLOTANTE(2, 2),
+    CONCATENAR(3, 3), NOT_BOOL(2, 2),
+    IMPRIMIR(1, 1),
+    VERIFICAR_GLOBAL(1, 1),
+    SALTAR(1, 0), SALTAR_SI_FALSO(2, 1),
+    SALTAR_SI_NO_MENOR_ENT(3, 2), SALTAR_SI_NO_MAYOR_ENT(3, 2),
+    SALTAR_SI_NO_MENOR_FLO(3, 2), SALTAR_SI_NO_MAYOR_FLO(3, 2),
+    RETORNAR(0, 0);
+
+    static final OpCodeRegistro[] VALORES = values();
+
+    final int operandos;
+    final int registros;
+
+    OpCodeRegistro(int operandos, int registros) {
+        this.operandos = operandos;
+        this.registros = registros;
+    }
+
+}
@@ -0,0 +1,252 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Propósito: Mantém um script compilado enquanto ele é editado, reanalisando só o trecho afetado por cada edição.
+ * Detalhes Chave: A fonte é dividida em unidades, uma por declaração de nível superior, cada uma com a posição (em
+ * bytes UTF-8) do fim do seu último token, a AST e os erros de compilação dela. editar() recomeça o escaneamento e a
+ * análise sintática no fim da unidade que precede a anterior à edição, puxando os tokens sob demanda de um
+ * FlujoTokens sobre o texto em memória, e para assim que uma declaração nova termina exatamente onde terminava uma
+ * declaração antiga depois da edição: dali em diante o texto não mudou, o Escaner e o parser estão no mesmo estado
+ * de antes, e as unidades seguintes são reaproveitadas com a sua AST. Assim o custo de uma edição acompanha o
+ * tamanho da mudança, e não o do arquivo. A TablaSimbolos é compartilhada por todas as reanálises, para que os
+ * símbolos das ASTs reaproveitadas continuem valendo. Quando a edição muda o número de linhas, as unidades seguintes
+ * acumulam o deslocamento, aplicado aos seus tokens e erros só quando sentencias() ou errores() os pedem.
+ * Um erro sintático fica com a declaração em análise quando ele foi reportado. Um erro léxico fica com a unidade em
+ * cujo trecho (do fim da anterior até o seu fim) o Escaner estava, porque o parser pode ler o primeiro token da
+ * declaração seguinte antes de terminar a sua; os que ficam depois da última unidade são guardados à parte.
+ */
+public class SesionIncremental {
+
+    private static class Diagnostico {
+        // Posição do Escaner e índice da declaração em análise (-1 nos erros léxicos) quando o erro foi reportado.
+        final int posicion;
+        final int declaracion;
+        int linea;
+        final String donde;
+        final String mensaje;
+
+        Diagnostico(int posicion, int declaracion, int linea, String donde, String mensaje) {
+            this.posicion = posicion;
+            this.declaracion = declaracion;
+            this.linea = linea;
+            this.donde = donde;
+            this.mensaje = mensaje;
+        }
+    }
+
+    private static class Unidad {
+        // Posição do fim do último token e linha em que ele termina.
+        int fin;
+        int lineaFin;
+        final Sentencia sentencia;
+        // Tokens criados ao analisar a unidade e erros dela, para o deslocamento de linhas.
+        final List<Token> tokens;
+        final List<Diagnostico> diagnosticos = new ArrayList<>();
+        int desfase = 0;
+
+        Unidad(int fin, int lineaFin, Sentencia sentencia, List<Token> tokens) {
+            this.fin = fin;
+            this.lineaFin = lineaFin;
+            this.sentencia = sentencia;
+            this.tokens = tokens;
+        }
+
+        void aplicarDesfase() {
+            if (desfase == 0) return;
+            for (Token token : tokens) token.linea += desfase;
+            for (Diagnostico diagnostico : diagnosticos) diagnostico.linea += desfase;
+            desfase = 0;
+        }
+    }
+
+    private final TablaSimbolos simbolos = new TablaSimbolos();
+    private byte[] texto;
+    private int longitud;
+    private final List<Unidad> unidades = new ArrayList<>();
+    private List<Diagnostico> finales = new ArrayList<>();
+    private int desfaseFinales = 0;
+    private int reanalizadas = 0;
+
+    SesionIncremental(String texto) {
+        this(texto.getBytes(StandardCharsets.UTF_8));
+    }
+
+    SesionIncremental(byte[] texto) {
+        this.texto = texto.clone();
+        this.longitud = texto.length;
+        analizarDesde(0, 0, 0, 0);
+    }
+
+    // posicion e eliminados contam bytes UTF-8 do texto atual.
+    void editar(int posicion, int eliminados, String insertado) {
+        editar(posicion, eliminados, insertado.getBytes(StandardCharsets.UTF_8));
+    }
+
+    void editar(int posicion, int eliminados, byte[] insertado) {
+        if (posicion < 0 || eliminados < 0 || posicion + eliminados > longitud) {
+            throw new IndexOutOfBoundsException("Edición fuera del texto: " + posicion + "+" + eliminados);
+        }
+        int delta = insertado.length - eliminados;
+        int deltaLineas = contarLineas(insertado, 0, insertado.length) - contarLineas(texto, posicion, eliminados);
+        reemplazar(posicion, eliminados, insertado);
+
+        // Volta uma unidade a mais: a declaração anterior pode absorver a editada (um 'sino', por exemplo).
+        int primera = Math.max(0, primeraConFinDesde(posicion) - 1);
+        analizarDesde(primera, posicion + eliminados, delta, deltaLineas);
+    }
+
+    // Reanalisa a partir do fim da unidade primera - 1. As unidades antigas que terminam depois de finEdicion (em
+    // posições anteriores à edição) podem ser reaproveitadas, deslocadas em delta bytes e deltaLineas linhas.
+    private void analizarDesde(int primera, int finEdicion, int delta, int deltaLineas) {
+        int desde = primera > 0 ? unidades.get(primera - 1).fin : 0;
+        int linea = primera > 0 ? unidades.get(primera - 1).lineaFin : 1;
+
+        FlujoTokens flujo = new FlujoTokens(ByteBuffer.wrap(texto, 0, longitud), desde, linea, simbolos);
+        AnalizadorSintactico analizador = new AnalizadorSintactico(flujo);
+        List<Diagnostico> capturados = new ArrayList<>();
+        Lox.ReceptorErrores anterior = Lox.receptor;
+        List<Unidad> nuevas = new ArrayList<>();
+        // Só os erros sintáticos indicam onde estão (donde); os léxicos chegam com donde vazio.
+        Lox.receptor = (lineaError, donde, mensaje) -> capturados.add(new Diagnostico(flujo.leidos(),
+                donde.isEmpty() ? -1 : nuevas.size(), lineaError, donde, mensaje));
+
+        int antigua = primera;
+        int reaprovechada = -1;
+        try {
+            while (!analizador.terminado()) {
+                List<Token> tokens = new ArrayList<>();
+                flujo.registrar(tokens);
+                Sentencia sentencia = analizador.declaracionOSentencia();
+                flujo.registrar(null);
+                int ultimo = analizador.posicion() - 1;
+                int fin = flujo.fin(ultimo);
+                nuevas.add(new Unidad(fin, flujo.linea(ultimo), sentencia, tokens));
+
+                // Sincronizou com uma unidade antiga que termina depois da edição: o resto não muda.
+                while (antigua < unidades.size() && unidades.get(antigua).fin + delta < fin) antigua++;
+                if (antigua < unidades.size() && unidades.get(antigua).fin >= finEdicion
+                        && unidades.get(antigua).fin + delta == fin) {
+                    reaprovechada = antigua + 1;
+                    break;
+                }
+            }
+        } finally {
+            Lox.receptor = anterior;
+        }
+
+        repartir(capturados, nuevas);
+        if (reaprovechada < 0) {
+            reaprovechada = unidades.size();
+            finales = new ArrayList<>();
+            desfaseFinales = 0;
+            int ultimoFin = nuevas.isEmpty() ? desde : nuevas.get(nuevas.size() - 1).fin;
+            for (Diagnostico diagnostico : capturados) {
+                if (diagnostico.declaracion < 0 && diagnostico.posicion > ultimoFin) finales.add(diagnostico);
+            }
+        } else {
+            desfaseFinales += deltaLineas;
+        }
+
+        for (int i = reaprovechada; i < unidades.size(); i++) {
+            Unidad unidad = unidades.get(i);
+            unidad.fin += delta;
+            unidad.lineaFin += deltaLineas;
+            unidad.desfase += deltaLineas;
+        }
+        unidades.subList(primera, reaprovechada).clear();
+        unidades.addAll(primera, nuevas);
+        reanalizadas = nuevas.size();
+    }
+
+    // Um erro léxico vai para a primeira unidade nova que termina na posição dele ou depois; os que passam do fim da
+    // última ficam de fora (são erros finais ou pertencem à unidade reaproveitada seguinte).
+    private static void repartir(List<Diagnostico> capturados, List<Unidad> nuevas) {
+        int u = 0;
+        for (Diagnostico diagnostico : capturados) {
+            if (diagnostico.declaracion >= 0) {
+                nuevas.get(diagnostico.declaracion).diagnosticos.add(diagnostico);
+                continue;
+            }
+            while (u < nuevas.size() && nuevas.get(u).fin < diagnostico.posicion) u++;
+            if (u < nuevas.size()) nuevas.get(u).diagnosticos.add(diagnostico);
+        }
+    }
+
+    private int primeraConFinDesde(int posicion) {
+        int bajo = 0;
+        int alto = unidades.size();
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (unidades.get(medio).fin < posicion) bajo = medio + 1;
+            else alto = medio;
+        }
+        return bajo;
+    }
+
+    private void reemplazar(int posicion, int eliminados, byte[] insertado) {
+        int nuevaLongitud = longitud - eliminados + insertado.length;
+        byte[] destino = texto;
+        if (nuevaLongitud > texto.length) {
+            destino = new byte[Math.max(nuevaLongitud, texto.length * 2)];
+            System.arraycopy(texto, 0, destino, 0, posicion);
+        }
+        System.arraycopy(texto, posicion + eliminados, destino, posicion + insertado.length,
+                longitud - posicion - eliminados);
+        System.arraycopy(insertado, 0, destino, posicion, insertado.length);
+        texto = destino;
+        longitud = nuevaLongitud;
+    }
+
+    private static int contarLineas(byte[] bytes, int desde, int cantidad) {
+        int lineas = 0;
+        for (int i = desde; i < desde + cantidad; i++) {
+            if (bytes[i] == '\n') lineas++;
+        }
+        return lineas;
+    }
+
+    // Declarações sem erro de sintaxe, na ordem do texto.
+    List<Sentencia> sentencias() {
+        List<Sentencia> sentencias = new ArrayList<>();
+        for (Unidad unidad : unidades) {
+            unidad.aplicarDesfase();
+            if (unidad.sentencia != null) sentencias.add(unidad.sentencia);
+        }
+        return sentencias;
+    }
+
+    // Erros léxicos e sintáticos do texto atual, no formato de Lox.error().
+    List<String> errores() {
+        List<String> errores = new ArrayList<>();
+        for (Unidad unidad : unidades) {
+            unidad.aplicarDesfase();
+            for (Diagnostico diagnostico : unidad.diagnosticos) errores.add(formatear(diagnostico));
+        }
+        for (Diagnostico diagnostico : finales) {
+            diagnostico.linea += desfaseFinales;
+            errores.add(formatear(diagnostico));
+        }
+        desfaseFinales = 0;
+        return errores;
+    }
+
+    private static String formatear(Diagnostico diagnostico) {
+        return Lox.formatearError(diagnostico.linea, diagnostico.donde, diagnostico.mensaje);
+    }
+
+    String texto() {
+        return new String(texto, 0, longitud, StandardCharsets.UTF_8);
+    }
+
+    int totalSentencias() {
+        return unidades.size();
+    }
+
+    // Declarações analisadas de novo pela última edição.
+    int reanalizadas() {
+        return reanalizadas;
+    }
+}
@@ -2,7 +2,8 @@
  * Propósito: Define a enumeração dos tipos de dados primitivos da linguagem,
  * usados para a verificação de tipos na análise semântica.
  * Detalhes Chave: Tipos incluídos: ENTERO, FLOTANTE, BOOLEANO, CADENA, NULO, e INDEFINIDO.
- * O método estático desdeToken(Token tokenTipo) mapeia o token do parser para um tipo semântico.
+ * O método estático desdeToken(Token tokenTipo) mapeia o token do parser para um tipo semântico (desdeTipoToken(),
+ * a partir só do TokenType, serve ao CompiladorUnaPasada).
  */
 public enum Tipo {
     ENTERO,
@@ -13,7 +14,11 @@ public enum Tipo {
     INDEFINIDO;
 
     public static Tipo desdeToken(Token tokenTipo) {
-        switch (tokenTipo.tipo) {
+        return desdeTipoToken(tokenTipo.tipo);
+    }
+
+    public static Tipo desdeTipoToken(TokenType tipo) {
+        switch (tipo) {
             case ENTERO: return ENTERO;
             case FLOTANTE: return FLOTANTE;
             case BOOLEANO: return BOOLEANO;
@@ -1,21 +1,25 @@
 /**
  * Propósito: Representa uma unidade léxica (token) gerada pelo scanner.
  * Detalhes Chave: Armazena quatro atributos essenciais: o tipo (TokenType), o lexema (o texto original),
- * o valor literal (para números e strings), e a linea onde o token foi encontrado.
+ * o valor literal (para números e strings), e a linea onde o token foi encontrado. Identificadores levam também o
+ * simbolo, o número do nome na TablaSimbolos (-1 nos demais tokens). A linha não é final: a SesionIncremental a
+ * desloca nos tokens que reaproveita quando uma edição acima deles acrescenta ou remove linhas.
  */
 public class Token {
 
     final TokenType tipo;
     final String lexema;
     final Object literal;
-    final int linea;
+    int linea;
+    final int simbolo;
 
 
-    Token(TokenType tipo, String lexema, Object literal, int linea) {
+    Token(TokenType tipo, String lexema, Object literal, int linea, int simbolo) {
         this.tipo = tipo;
         this.lexema = lexema;
         this.literal = literal;
         this.linea = linea;
+        this.simbolo = simbolo;
     }
 
     public String toString() {
@@ -0,0 +1,76 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Propósito: Versão do SaltadorBytes com a Vector API: compara 16 ou 32 bytes da fonte por vez.
+ * Detalhes Chave: Fica fora da pasta principal porque depende do módulo incubado jdk.incubator.vector; é compilada
+ * e executada com --add-modules jdk.incubator.vector (ver README). Cada método monta a máscara dos bytes que ainda
+ * pertencem à sequência e para no primeiro que não pertence. Os primeiros PREFIJO bytes são examinados um a um,
+ * porque a maioria dos espaços e identificadores termina antes disso e não compensa montar um vetor; o resto do
+ * intervalo, menor que um vetor, também fica com a versão escalar.
+ */
+public class SaltadorVectorial extends SaltadorBytes {
+
+    private static final VectorSpecies<Byte> ESPECIE =
+            ByteVector.SPECIES_PREFERRED.length() >= 32 ? ByteVector.SPECIES_256 : ByteVector.SPECIES_128;
+    private static final int ANCHO = ESPECIE.length();
+    private static final int PREFIJO = 8;
+
+    @Override
+    int finDeEspacios(ByteBuffer fuente, int desde, int hasta) {
+        int i = desde;
+        int prefijo = Math.min(desde + PREFIJO, hasta);
+        while (i < prefijo && esEspacio(fuente.get(i))) i++;
+        if (i < prefijo) return i;
+        while (i + ANCHO <= hasta) {
+            ByteVector v = ByteVector.fromByteBuffer(ESPECIE, fuente, i, ByteOrder.nativeOrder());
+            VectorMask<Byte> espacio = v.eq((byte) ' ').or(v.eq((byte) '\t')).or(v.eq((byte) '\r'));
+            if (!espacio.allTrue()) return i + espacio.not().firstTrue();
+            i += ANCHO;
+        }
+        return super.finDeEspacios(fuente, i, hasta);
+    }
+
+    @Override
+    int finDeLinea(ByteBuffer fuente, int desde, int hasta) {
+        int i = desde;
+        int prefijo = Math.min(desde + PREFIJO, hasta);
+        while (i < prefijo && fuente.get(i) != '\n') i++;
+        if (i < prefijo) return i;
+        while (i + ANCHO <= hasta) {
+            ByteVector v = ByteVector.fromByteBuffer(ESPECIE, fuente, i, ByteOrder.nativeOrder());
+            VectorMask<Byte> salto = v.eq((byte) '\n');
+            if (salto.anyTrue()) return i + salto.firstTrue();
+            i += ANCHO;
+        }
+        return super.finDeLinea(fuente, i, hasta);
+    }
+
+    @Override
+    int finDeIdentificador(ByteBuffer fuente, int desde, int hasta) {
+        int i = desde;
+        int prefijo = Math.min(desde + PREFIJO, hasta);
+        while (i < prefijo && esAlfanumerico(fuente.get(i))) i++;
+        if (i < prefijo) return i;
+        while (i + ANCHO <= hasta) {
+            ByteVector v = ByteVector.fromByteBuffer(ESPECIE, fuente, i, ByteOrder.nativeOrder());
+            // Com o bit 0x20 ligado, maiúsculas viram minúsculas; bytes fora do ASCII são negativos e não passam.
+            ByteVector minuscula = v.or((byte) 0x20);
+            VectorMask<Byte> alfanumerico = entre(minuscula, 'a', 'z')
+                    .or(entre(v, '0', '9'))
+                    .or(v.eq((byte) '_'));
+            if (!alfanumerico.allTrue()) return i + alfanumerico.not().firstTrue();
+            i += ANCHO;
+        }
+        return super.finDeIdentificador(fuente, i, hasta);
+    }
+
+    private static VectorMask<Byte> entre(ByteVector v, char menor, char mayor) {
+        return v.compare(VectorOperators.GE, (byte) menor).and(v.compare(VectorOperators.LE, (byte) mayor));
+    }
+}
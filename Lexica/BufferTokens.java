@@ -0,0 +1,133 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Propósito: Guarda os tokens produzidos pelo Escaner de forma compacta, no lugar de uma List<Token>.
+ * Detalhes Chave: Cada token ocupa uma posição em quatro arrays paralelos de int: o ordinal do TokenType, o início e o
+ * comprimento do lexema (em bytes da fonte UTF-8) e a linha, mais o símbolo dos identificadores na TablaSimbolos.
+ * Lexemas e literais não são guardados: lexema() e literal() decodificam o trecho da fonte só quando pedidos (o
+ * lexema de um identificador vem da tabela), e token() monta um Token apenas para quem precisa dele (nós da AST e
+ * erros).
+ */
+public class BufferTokens implements FuenteTokens {
+    private static final TokenType[] TIPOS = TokenType.values();
+
+    private final ByteBuffer fuente;
+    private final TablaSimbolos simbolos;
+    private int[] tipos = new int[256];
+    private int[] inicios = new int[256];
+    private int[] longitudes = new int[256];
+    private int[] lineas = new int[256];
+    private int[] simbolosToken = new int[256];
+    private int tamanio = 0;
+
+    BufferTokens(ByteBuffer fuente, TablaSimbolos simbolos) {
+        this.fuente = fuente;
+        this.simbolos = simbolos;
+    }
+
+    void agregar(TokenType tipo, int inicio, int longitud, int linea, int simbolo) {
+        if (tamanio == tipos.length) asegurar(tamanio + 1);
+        tipos[tamanio] = tipo.ordinal();
+        inicios[tamanio] = inicio;
+        longitudes[tamanio] = longitud;
+        lineas[tamanio] = linea;
+        simbolosToken[tamanio] = simbolo;
+        tamanio++;
+    }
+
+    // Copia os tokens de outro buffer sobre a mesma fonte (escaneamento paralelo), somando desplazamientoLinea às
+    // linhas e trocando os símbolos da tabela do outro buffer pelos desta, na ordem em que aparecem.
+    void anexar(BufferTokens otro, int desplazamientoLinea) {
+        int[] traduccion = new int[otro.simbolos.tamanio()];
+        for (int s = 0; s < traduccion.length; s++) traduccion[s] = simbolos.agregar(otro.simbolos.bytes(s));
+
+        asegurar(tamanio + otro.tamanio);
+        System.arraycopy(otro.tipos, 0, tipos, tamanio, otro.tamanio);
+        System.arraycopy(otro.inicios, 0, inicios, tamanio, otro.tamanio);
+        System.arraycopy(otro.longitudes, 0, longitudes, tamanio, otro.tamanio);
+        for (int i = 0; i < otro.tamanio; i++) {
+            lineas[tamanio + i] = otro.lineas[i] + desplazamientoLinea;
+            int simbolo = otro.simbolosToken[i];
+            simbolosToken[tamanio + i] = simbolo < 0 ? -1 : traduccion[simbolo];
+        }
+        tamanio += otro.tamanio;
+    }
+
+    private void asegurar(int minimo) {
+        if (minimo <= tipos.length) return;
+        int capacidad = Math.max(minimo, tipos.length * 2);
+        tipos = Arrays.copyOf(tipos, capacidad);
+        inicios = Arrays.copyOf(inicios, capacidad);
+        longitudes = Arrays.copyOf(longitudes, capacidad);
+        lineas = Arrays.copyOf(lineas, capacidad);
+        simbolosToken = Arrays.copyOf(simbolosToken, capacidad);
+    }
+
+    int tamanio() {
+        return tamanio;
+    }
+
+    @Override
+    public TokenType tipo(int i) {
+        return TIPOS[tipos[i]];
+    }
+
+    @Override
+    public int linea(int i) {
+        return lineas[i];
+    }
+
+    String lexema(int i) {
+        if (simbolosToken[i] >= 0) return simbolos.nombre(simbolosToken[i]);
+        return decodificar(inicios[i], longitudes[i]);
+    }
+
+    @Override
+    public int simbolo(int i) {
+        return simbolosToken[i];
+    }
+
+    @Override
+    public TablaSimbolos simbolos() {
+        return simbolos;
+    }
+
+    @Override
+    public Object literal(int i) {
+        TokenType tipo = tipo(i);
+        if (tipo == TokenType.CADENA) return decodificar(inicios[i] + 1, longitudes[i] - 2);
+        if (tipo == TokenType.NUMERO) return literal(tipo, lexema(i));
+        return null;
+    }
+
+    // O Escaner já validou o literal, então aqui basta convertê-lo de novo a partir do texto.
+    static Object literal(TokenType tipo, String lexema) {
+        switch (tipo) {
+            case CADENA:
+                return lexema.substring(1, lexema.length() - 1);
+            case NUMERO:
+                if (lexema.indexOf('.') >= 0) return Double.parseDouble(lexema);
+                return Long.parseLong(lexema);
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public Token token(int i) {
+        return new Token(tipo(i), lexema(i), literal(i), lineas[i], simbolosToken[i]);
+    }
+
+    private String decodificar(int inicio, int longitud) {
+        byte[] bytes = new byte[longitud];
+        fuente.get(inicio, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Mesmo texto que Token.toString(), sem criar o Token.
+    String describir(int i) {
+        return tipo(i) + " " + lexema(i) + " " + literal(i);
+    }
+}
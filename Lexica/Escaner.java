@@ -1,202 +1,528 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
- * Propósito: É o scanner da linguagem, responsável por ler o código-fonte (String) e produzir uma lista de objetos Token.
- * Detalhes Chave: Usa um mapa estático (palabrasClave) para identificar palavras reservadas. Implementa métodos como
- * cadena() e numero() para tratar literais. O método principal é escanearTokens().
+ * Propósito: É o scanner da linguagem, responsável por ler o código-fonte e produzir os tokens num BufferTokens.
+ * Detalhes Chave: Trabalha direto sobre os bytes UTF-8 da fonte: desdeArchivo() mapeia o arquivo na memória com
+ * FileChannel.map, sem copiá-lo para uma String, e o construtor com String só a codifica em UTF-8. Todos os símbolos
+ * da linguagem são ASCII, então bytes acima de 0x7F só aparecem dentro de cadenas e comentários (ou como caractere
+ * inesperado). O despacho é feito por tabela: CLASES dá a classe de cada byte ASCII e SIMPLES/CON_IGUAL o token dos
+ * símbolos. As palavras reservadas ficam numa tabela de hash perfeito indexada pelo primeiro caractere e pelo
+ * comprimento, comparada byte a byte sobre a fonte, sem criar String; os demais identificadores são internados na
+ * TablaSimbolos, e o token leva o símbolo. Implementa métodos como cadena() e numero()
+ * para tratar literais; números sem parte decimal viram Long (ENTERO), os demais Double (FLOTANTE).
+ * Cada token é registrado só pelo offset em bytes e linha no buffer; o BufferTokens decodifica lexemas sob demanda.
+ * O método principal é escanearTokens(). No modo fluxo (construído pelo FlujoTokens), a fonte é uma janela que
+ * recargar() completa a partir do canal quando a leitura chega ao fim dela, e escanearSiguiente() entrega os tokens
+ * ao FlujoTokens um a um. Fontes com mais de UMBRAL_PARALELO bytes são divididas em trechos terminados em '\n' e
+ * escaneadas em paralelo (escanearEnParalelo()); o resultado é o mesmo do escaneamento sequencial. Espaços,
+ * comentários e identificadores são atravessados pelo SaltadorBytes, que pode usar a Vector API.
  */
-public class Escaner {
 
-    private final String fuente;
-    private final List<Token> tokens = new ArrayList<>();
+public class Escaner {
 
-    private static final Map<String, TokenType> palabrasClave;
+    private static final int VENTANA = 8192;
+    private static final int UMBRAL_PARALELO = 1 << 20;
+    private static final SaltadorBytes SALTADOR = SaltadorBytes.INSTANCIA;
+
+    private ByteBuffer fuente;
+    private int longitud;
+    private final BufferTokens tokens;
+    private final TablaSimbolos simbolos;
+    // Só no modo fluxo; no modo normal a fonte inteira já está em fuente.
+    private final ReadableByteChannel canal;
+    private final FlujoTokens flujo;
+    private boolean canalAgotado = false;
+    // Bytes já descartados da janela, para que as posições entregues ao FlujoTokens sejam absolutas.
+    private int descartados = 0;
+    // Só nos trechos do escaneamento paralelo: os erros ficam guardados até a junção, e um trecho que não é o último
+    // não trata uma cadena aberta no seu fim como erro, apenas anota onde ela começou.
+    private final List<ErrorLexico> errores;
+    private final boolean parcial;
+    private int cadenaAbierta = -1;
+    private int lineaCadena;
+
+    // Classes de caractere usadas no despacho; caracteres fora do ASCII são OTRO.
+    private static final byte OTRO = 0;
+    private static final byte ESPACIO = 1;
+    private static final byte SALTO = 2;
+    private static final byte DIGITO = 3;
+    private static final byte ALFA = 4;
+    private static final byte SIMPLE = 5;
+    private static final byte CON_IGUAL = 6;
+    private static final byte BARRA = 7;
+    private static final byte COMILLA = 8;
+
+    private static final byte[] CLASES = new byte[128];
+    private static final TokenType[] SIMPLES = new TokenType[128];
+    // Para '!', '=', '<' e '>': o token sozinho e o token seguido de '='.
+    private static final TokenType[] CON_IGUAL_SOLO = new TokenType[128];
+    private static final TokenType[] CON_IGUAL_DOBLE = new TokenType[128];
+
+    // Hash perfeito das palavras reservadas: (2 * primeiro caractere + comprimento) & 63 não colide para nenhuma delas.
+    private static final int MASCARA_CLAVES = 63;
+    private static final byte[][] PALABRAS_CLAVE = new byte[MASCARA_CLAVES + 1][];
+    private static final TokenType[] TIPOS_CLAVE = new TokenType[MASCARA_CLAVES + 1];
 
     private int inicio = 0;
     private int actual = 0;
     private int linea = 1;
 
     Escaner(String fuente) {
+        this(ByteBuffer.wrap(fuente.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    Escaner(ByteBuffer fuente) {
+        this(fuente, new TablaSimbolos());
+    }
+
+    Escaner(ByteBuffer fuente, TablaSimbolos simbolos) {
+        this.fuente = fuente;
+        this.longitud = fuente.limit();
+        this.simbolos = simbolos;
+        this.tokens = new BufferTokens(fuente, simbolos);
+        this.canal = null;
+        this.flujo = null;
+        this.errores = null;
+        this.parcial = false;
+    }
+
+    Escaner(ReadableByteChannel canal, FlujoTokens flujo, TablaSimbolos simbolos) {
+        this.fuente = ByteBuffer.allocate(VENTANA);
+        this.longitud = 0;
+        this.simbolos = simbolos;
+        this.tokens = null;
+        this.canal = canal;
+        this.flujo = flujo;
+        this.errores = null;
+        this.parcial = false;
+    }
+
+    // Modo fluxo sobre uma fonte já em memória (SesionIncremental): a leitura começa em desde, com a linha dada, e
+    // para no limite da fonte. A fonte precisa ter um array acessível.
+    Escaner(ByteBuffer fuente, int desde, int linea, FlujoTokens flujo, TablaSimbolos simbolos) {
         this.fuente = fuente;
+        this.longitud = fuente.limit();
+        this.actual = desde;
+        this.linea = linea;
+        this.simbolos = simbolos;
+        this.tokens = null;
+        this.canal = null;
+        this.flujo = flujo;
+        this.errores = null;
+        this.parcial = false;
+    }
+
+    // Trecho [desde, hasta) de uma fonte maior; as linhas contam a partir de 1 no começo do trecho, e os símbolos
+    // numa tabela própria, traduzidos para a tabela principal na junção.
+    private Escaner(ByteBuffer fuente, int desde, int hasta, boolean parcial) {
+        this.fuente = fuente;
+        this.longitud = hasta;
+        this.actual = desde;
+        this.simbolos = new TablaSimbolos();
+        this.tokens = new BufferTokens(fuente, simbolos);
+        this.canal = null;
+        this.flujo = null;
+        this.errores = new ArrayList<>();
+        this.parcial = parcial;
+    }
+
+    // O mapeamento continua válido depois que o canal é fechado.
+    static Escaner desdeArchivo(Path ruta) throws IOException {
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            return new Escaner(canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size()));
+        }
     }
     static {
-        palabrasClave = new HashMap<>();
-        palabrasClave.put("y",       TokenType.Y);
-        palabrasClave.put("clase",   TokenType.CLASE);
-        palabrasClave.put("sino",    TokenType.SINO);
-        palabrasClave.put("falso",   TokenType.FALSO);
-        palabrasClave.put("para",    TokenType.PARA);
-        palabrasClave.put("fun",     TokenType.FUN);
-        palabrasClave.put("si",      TokenType.SI);
-        palabrasClave.put("nulo",    TokenType.NULO);
-        palabrasClave.put("o",       TokenType.O);
-        palabrasClave.put("imprimir",TokenType.IMPRIMIR);
-        palabrasClave.put("retornar",TokenType.RETORNAR);
-        palabrasClave.put("super",   TokenType.SUPER);
-        palabrasClave.put("este",    TokenType.ESTE);
-        palabrasClave.put("verdadero", TokenType.VERDADERO);
-        palabrasClave.put("var",     TokenType.VAR);
-        palabrasClave.put("mientras",TokenType.MIENTRAS);
-        palabrasClave.put("entero",   TokenType.ENTERO);
-        palabrasClave.put("flotante", TokenType.FLOTANTE);
-        palabrasClave.put("booleano", TokenType.BOOLEANO);
-    }
-
-    List<Token> escanearTokens() {
+        palabraClave("y",        TokenType.Y);
+        palabraClave("clase",    TokenType.CLASE);
+        palabraClave("sino",     TokenType.SINO);
+        palabraClave("falso",    TokenType.FALSO);
+        palabraClave("para",     TokenType.PARA);
+        palabraClave("fun",      TokenType.FUN);
+        palabraClave("si",       TokenType.SI);
+        palabraClave("nulo",     TokenType.NULO);
+        palabraClave("o",        TokenType.O);
+        palabraClave("imprimir", TokenType.IMPRIMIR);
+        palabraClave("retornar", TokenType.RETORNAR);
+        palabraClave("super",    TokenType.SUPER);
+        palabraClave("este",     TokenType.ESTE);
+        palabraClave("verdadero", TokenType.VERDADERO);
+        palabraClave("var",      TokenType.VAR);
+        palabraClave("mientras", TokenType.MIENTRAS);
+        palabraClave("entero",   TokenType.ENTERO);
+        palabraClave("flotante", TokenType.FLOTANTE);
+        palabraClave("booleano", TokenType.BOOLEANO);
+
+        CLASES[' '] = ESPACIO;
+        CLASES['\r'] = ESPACIO;
+        CLASES['\t'] = ESPACIO;
+        CLASES['\n'] = SALTO;
+        for (char c = '0'; c <= '9'; c++) CLASES[c] = DIGITO;
+        for (char c = 'a'; c <= 'z'; c++) CLASES[c] = ALFA;
+        for (char c = 'A'; c <= 'Z'; c++) CLASES[c] = ALFA;
+        CLASES['_'] = ALFA;
+        CLASES['/'] = BARRA;
+        CLASES['"'] = COMILLA;
+
+        simple('(', TokenType.PARENTESIS_IZQUIERDO);
+        simple(')', TokenType.PARENTESIS_DERECHO);
+        simple('{', TokenType.LLAVE_IZQUIERDA);
+        simple('}', TokenType.LLAVE_DERECHA);
+        simple(',', TokenType.COMA);
+        simple('.', TokenType.PUNTO);
+        simple('-', TokenType.MENOS);
+        simple('+', TokenType.MAS);
+        simple(';', TokenType.PUNTO_Y_COMA);
+        simple('*', TokenType.ASTERISCO);
+
+        conIgual('!', TokenType.EXCLAMACION, TokenType.EXCLAMACION_IGUAL);
+        conIgual('=', TokenType.IGUAL, TokenType.IGUAL_IGUAL);
+        conIgual('<', TokenType.MENOR, TokenType.MENOR_IGUAL);
+        conIgual('>', TokenType.MAYOR, TokenType.MAYOR_IGUAL);
+    }
+
+    private static void palabraClave(String palabra, TokenType tipo) {
+        int h = hashClave(palabra.charAt(0), palabra.length());
+        if (PALABRAS_CLAVE[h] != null) {
+            throw new IllegalStateException("Colisión en la tabla de palabras clave: " + palabra + " y "
+                    + new String(PALABRAS_CLAVE[h], StandardCharsets.US_ASCII));
+        }
+        PALABRAS_CLAVE[h] = palabra.getBytes(StandardCharsets.US_ASCII);
+        TIPOS_CLAVE[h] = tipo;
+    }
+
+    private static void simple(char c, TokenType tipo) {
+        CLASES[c] = SIMPLE;
+        SIMPLES[c] = tipo;
+    }
+
+    private static void conIgual(char c, TokenType solo, TokenType doble) {
+        CLASES[c] = CON_IGUAL;
+        CON_IGUAL_SOLO[c] = solo;
+        CON_IGUAL_DOBLE[c] = doble;
+    }
+
+    private static int hashClave(int primero, int longitud) {
+        return (2 * primero + longitud) & MASCARA_CLAVES;
+    }
+
+    BufferTokens escanearTokens() {
+        if (longitud >= UMBRAL_PARALELO && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            return escanearEnParalelo();
+        }
+        escanearTramo();
+
+        tokens.agregar(TokenType.FIN_DE_ARCHIVO, actual, 0, linea, -1);
+        return tokens;
+    }
+
+    private void escanearTramo() {
         while (!esFin()) {
             inicio = actual;
             escanearToken();
         }
+    }
+
+    // Cada trecho começa logo depois de um '\n', então o único token que pode atravessar a divisa é uma cadena de
+    // várias linhas. Na junção, feita em ordem, um trecho que terminou com uma cadena aberta faz o trecho seguinte
+    // ser descartado e escaneado de novo a partir do início da cadena; os erros são reportados na ordem da fonte.
+    private BufferTokens escanearEnParalelo() {
+        int partes = ForkJoinPool.getCommonPoolParallelism() * 4;
+        int tamanio = Math.max(UMBRAL_PARALELO / 4, longitud / partes);
+        List<Integer> fines = new ArrayList<>();
+        int fin = 0;
+        while (fin < longitud) {
+            fin = Math.min(fin + tamanio, longitud);
+            while (fin < longitud && fuente.get(fin - 1) != '\n') fin++;
+            fines.add(fin);
+        }
+
+        int n = fines.size();
+        Escaner[] tramos = new Escaner[n];
+        ForkJoinTask<?>[] tareas = new ForkJoinTask<?>[n];
+        for (int k = 0; k < n; k++) {
+            Escaner tramo = new Escaner(fuente, k == 0 ? 0 : fines.get(k - 1), fines.get(k), k < n - 1);
+            tramos[k] = tramo;
+            tareas[k] = ForkJoinPool.commonPool().submit(tramo::escanearTramo);
+        }
+        for (ForkJoinTask<?> tarea : tareas) tarea.join();
+
+        int lineaBase = 0;
+        Escaner tramo = tramos[0];
+        int siguiente = 1;
+        while (true) {
+            tokens.anexar(tramo.tokens, lineaBase);
+            for (ErrorLexico error : tramo.errores) Lox.error(lineaBase + error.linea, error.mensaje);
+            if (tramo.cadenaAbierta < 0) {
+                lineaBase += tramo.linea - 1;
+                if (siguiente == n) break;
+                tramo = tramos[siguiente++];
+            } else {
+                lineaBase += tramo.lineaCadena - 1;
+                tramo = new Escaner(fuente, tramo.cadenaAbierta, fines.get(siguiente), siguiente < n - 1);
+                siguiente++;
+                tramo.escanearTramo();
+            }
+        }
 
-        tokens.add(new Token(TokenType.FIN_DE_ARCHIVO, "", null, linea));
+        tokens.agregar(TokenType.FIN_DE_ARCHIVO, longitud, 0, lineaBase + 1, -1);
         return tokens;
     }
 
+    // Modo fluxo: escaneia até produzir ao menos um token (ou FIN_DE_ARCHIVO, no fim do canal).
+    void escanearSiguiente() {
+        int antes = flujo.producidos();
+        while (flujo.producidos() == antes) {
+            inicio = actual;
+            if (esFin()) {
+                flujo.agregar(TokenType.FIN_DE_ARCHIVO, "", linea, -1, descartados + actual, descartados + actual);
+                return;
+            }
+            escanearToken();
+        }
+    }
+
     private void escanearToken() {
-        char c = avanzar();
-        switch (c) {
-            case '(': agregarToken(TokenType.PARENTESIS_IZQUIERDO); break;
-            case ')': agregarToken(TokenType.PARENTESIS_DERECHO); break;
-            case '{': agregarToken(TokenType.LLAVE_IZQUIERDA); break;
-            case '}': agregarToken(TokenType.LLAVE_DERECHA); break;
-            case ',': agregarToken(TokenType.COMA); break;
-            case '.': agregarToken(TokenType.PUNTO); break;
-            case '-': agregarToken(TokenType.MENOS); break;
-            case '+': agregarToken(TokenType.MAS); break;
-            case ';': agregarToken(TokenType.PUNTO_Y_COMA); break;
-            case '*': agregarToken(TokenType.ASTERISCO); break;
-            case '!':
-                agregarToken(coincidir('=') ? TokenType.EXCLAMACION_IGUAL : TokenType.EXCLAMACION);
+        byte c = avanzar();
+        switch (clase(c)) {
+            case SIMPLE:
+                agregarToken(SIMPLES[c]);
                 break;
-            case '=':
-                agregarToken(coincidir('=') ? TokenType.IGUAL_IGUAL : TokenType.IGUAL);
+            case CON_IGUAL:
+                agregarToken(coincidir('=') ? CON_IGUAL_DOBLE[c] : CON_IGUAL_SOLO[c]);
                 break;
-            case '<':
-                agregarToken(coincidir('=') ? TokenType.MENOR_IGUAL : TokenType.MENOR);
-                break;
-            case '>':
-                agregarToken(coincidir('=') ? TokenType.MAYOR_IGUAL : TokenType.MAYOR);
-                break;
-            case '/':
+            case BARRA:
                 if (coincidir('/')) {
-                    while (ver() != '\n' && !esFin()) avanzar();
+                    do {
+                        actual = SALTADOR.finDeLinea(fuente, actual, longitud);
+                        inicio = actual;
+                    } while (actual == longitud && !esFin());
                 } else {
                     agregarToken(TokenType.BARRA);
                 }
                 break;
-
-            case ' ':
-            case '\r':
-            case '\t':
+            case ESPACIO:
+                // No modo fluxo, esFin() recarrega a janela quando o salto chega ao fim dela. Comentários e espaços
+                // não viram token: avançar inicio deixa recargar() descartar o que já foi saltado, em vez de dobrar a
+                // janela.
+                do {
+                    actual = SALTADOR.finDeEspacios(fuente, actual, longitud);
+                    inicio = actual;
+                } while (actual == longitud && !esFin());
                 break;
-            case '\n':
+            case SALTO:
                 linea++;
                 break;
-            case '"':
+            case COMILLA:
                 cadena();
                 break;
+            case DIGITO:
+                numero();
+                break;
+            case ALFA:
+                identificador();
+                break;
             default:
-                if (esDigito(c)) {
-                    numero();
-                } else if (esAlfa(c)) {
-                    identificador();
-                } else {
-                    Lox.error(linea, "Carácter inesperado.");
-                }
+                noAscii(c);
         }
     }
 
-    private void identificador() {
-        while (esAlfanumerico(ver())) avanzar();
-
-        String texto = fuente.substring(inicio, actual);
+    // Consome o resto de um caractere multibyte e reporta um erro por unidade UTF-16, como o scanner sobre String.
+    private void noAscii(byte c) {
+        int errores = (c & 0xF8) == 0xF0 ? 2 : 1;
+        if ((c & 0xC0) == 0xC0) {
+            while (!esFin() && (fuente.get(actual) & 0xC0) == 0x80) actual++;
+        }
+        for (int i = 0; i < errores; i++) error("Carácter inesperado.");
+    }
 
-        TokenType tipo = palabrasClave.get(texto);
-        if (tipo == null) tipo = TokenType.IDENTIFICADOR;
+    private void identificador() {
+        do {
+            actual = SALTADOR.finDeIdentificador(fuente, actual, longitud);
+        } while (actual == longitud && !esFin());
+
+        int largo = actual - inicio;
+        TokenType tipo = palabraClave(inicio, largo);
+        if (tipo == TokenType.IDENTIFICADOR) {
+            agregarToken(tipo, simbolos.agregar(fuente, inicio, largo));
+        } else {
+            agregarToken(tipo);
+        }
+    }
 
-        agregarToken(tipo);
+    // Procura a palavra reservada direto no trecho da fonte; devolve IDENTIFICADOR se não for uma.
+    private TokenType palabraClave(int inicio, int longitud) {
+        int h = hashClave(fuente.get(inicio), longitud);
+        byte[] palabra = PALABRAS_CLAVE[h];
+        if (palabra == null || palabra.length != longitud) return TokenType.IDENTIFICADOR;
+        for (int i = 0; i < longitud; i++) {
+            if (fuente.get(inicio + i) != palabra[i]) return TokenType.IDENTIFICADOR;
+        }
+        return TIPOS_CLAVE[h];
     }
 
     private void numero() {
-        while (esDigito(ver())) avanzar();
+        long valor = fuente.get(inicio) - '0';
+        boolean desborde = false;
+        while (esDigito(ver())) {
+            int digito = avanzar() - '0';
+            if (valor > (Long.MAX_VALUE - digito) / 10) desborde = true;
+            valor = valor * 10 + digito;
+        }
 
         if (ver() == '.' && esDigito(verSiguiente())) {
             avanzar();
             while (esDigito(ver())) avanzar();
+
+            agregarToken(TokenType.NUMERO);
+            return;
         }
 
-        agregarToken(TokenType.NUMERO,
-                Double.parseDouble(fuente.substring(inicio, actual)));
+        if (desborde) {
+            error("Número entero fuera de rango.");
+            return;
+        }
+        agregarToken(TokenType.NUMERO);
     }
 
     private void cadena() {
+        int lineaInicial = linea;
         while (ver() != '"' && !esFin()) {
             if (ver() == '\n') linea++;
             avanzar();
         }
 
         if (esFin()) {
-            Lox.error(linea, "Cadena de texto no terminada.");
+            if (parcial) {
+                cadenaAbierta = inicio;
+                lineaCadena = lineaInicial;
+                return;
+            }
+            error("Cadena de texto no terminada.");
             return;
         }
 
         avanzar();
 
-        String valor = fuente.substring(inicio + 1, actual - 1);
-
-        agregarToken(TokenType.CADENA, valor);
+        agregarToken(TokenType.CADENA);
     }
 
     private boolean coincidir(char esperado) {
         if (esFin()) return false;
-        if (fuente.charAt(actual) != esperado) return false;
+        if (fuente.get(actual) != esperado) return false;
         actual++;
         return true;
     }
 
-    private char ver() {
+    private byte ver() {
         if (esFin()) return '\0';
-        return fuente.charAt(actual);
+        return fuente.get(actual);
     }
 
-    private char verSiguiente() {
-        if (actual + 1 >= fuente.length()) return '\0';
-        return fuente.charAt(actual + 1);
+    private byte verSiguiente() {
+        while (actual + 1 >= longitud) {
+            if (!recargar()) return '\0';
+        }
+        return fuente.get(actual + 1);
     }
 
-    private boolean esAlfa(char c) {
-        return (c >= 'a' && c <= 'z') ||
-                (c >= 'A' && c <= 'Z') ||
-                c == '_';
+    // Bytes acima de 0x7F são negativos e pertencem a caracteres multibyte.
+    private static byte clase(byte c) {
+        return c >= 0 ? CLASES[c] : OTRO;
     }
 
-    private boolean esAlfanumerico(char c) {
-        return esAlfa(c) || esDigito(c);
+    private boolean esDigito(byte c) {
+        return clase(c) == DIGITO;
     }
 
-    private boolean esDigito(char c) {
-        return c >= '0' && c <= '9';
+    private boolean esFin() {
+        return actual >= longitud && !recargar();
     }
 
-    private boolean esFin() {
-        return actual >= fuente.length();
+    // Modo fluxo: descarta os bytes antes do token atual, dobra a janela se o token a ocupa toda e lê mais do canal.
+    // Devolve false quando não há mais bytes (e sempre, no modo normal).
+    private boolean recargar() {
+        if (canal == null || canalAgotado) return false;
+        try {
+            if (inicio > 0) {
+                fuente.limit(longitud).position(inicio);
+                fuente.compact();
+                longitud -= inicio;
+                actual -= inicio;
+                descartados += inicio;
+                inicio = 0;
+            }
+            if (longitud == fuente.capacity()) {
+                ByteBuffer mayor = ByteBuffer.allocate(fuente.capacity() * 2);
+                mayor.put(fuente.array(), 0, longitud);
+                fuente = mayor;
+            }
+            fuente.limit(fuente.capacity()).position(longitud);
+            int leidos;
+            do {
+                leidos = canal.read(fuente);
+            } while (leidos == 0);
+            if (leidos < 0) {
+                canalAgotado = true;
+                return false;
+            }
+            longitud += leidos;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
-    private char avanzar() {
-        return fuente.charAt(actual++);
+    // Modo fluxo: posição absoluta até onde a fonte já foi lida.
+    int posicion() {
+        return descartados + actual;
     }
 
+    private byte avanzar() {
+        return fuente.get(actual++);
+    }
+
+
+    private void error(String mensaje) {
+        if (errores != null) {
+            errores.add(new ErrorLexico(linea, mensaje));
+        } else {
+            Lox.error(linea, mensaje);
+        }
+    }
 
     private void agregarToken(TokenType tipo) {
-        agregarToken(tipo, null);
+        agregarToken(tipo, -1);
     }
 
-    private void agregarToken(TokenType tipo, Object literal) {
-        String texto = fuente.substring(inicio, actual);
+    private void agregarToken(TokenType tipo, int simbolo) {
+        if (flujo != null) {
+            String lexema = simbolo >= 0 ? simbolos.nombre(simbolo)
+                    : new String(fuente.array(), inicio, actual - inicio, StandardCharsets.UTF_8);
+            flujo.agregar(tipo, lexema, linea, simbolo, descartados + inicio, descartados + actual);
+        } else {
+            tokens.agregar(tipo, inicio, actual - inicio, linea, simbolo);
+        }
+    }
 
-        tokens.add(new Token(tipo, texto, literal, linea));
+    private static class ErrorLexico {
+        final int linea;
+        final String mensaje;
+
+        ErrorLexico(int linea, String mensaje) {
+            this.linea = linea;
+            this.mensaje = mensaje;
+        }
     }
 }
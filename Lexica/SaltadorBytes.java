@@ -0,0 +1,58 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Propósito: Encontra o fim das sequências que o Escaner atravessa sem produzir tokens byte a byte: espaços,
+ * o resto de uma linha de comentário e o resto de um identificador.
+ * Detalhes Chave: Esta classe é a versão escalar. Se a classe SaltadorVectorial (pasta simd, compilada à parte com o
+ * módulo jdk.incubator.vector) estiver no classpath e o módulo estiver disponível, INSTANCIA usa essa versão, que
+ * examina 16 ou 32 bytes por vez; senão, fica com esta. As duas devolvem sempre o mesmo índice.
+ * Todos os métodos procuram em [desde, hasta) e devolvem hasta quando a sequência vai até o fim do intervalo.
+ */
+public class SaltadorBytes {
+
+    static final SaltadorBytes INSTANCIA = cargar();
+
+    private static SaltadorBytes cargar() {
+        try {
+            SaltadorBytes vectorial = (SaltadorBytes) Class.forName("SaltadorVectorial")
+                    .getDeclaredConstructor().newInstance();
+            // Força a ligação com o módulo agora, para cair na versão escalar aqui e não no meio do escaneamento.
+            ByteBuffer prueba = ByteBuffer.wrap(new byte[64]);
+            vectorial.finDeEspacios(prueba, 0, 64);
+            vectorial.finDeLinea(prueba, 0, 64);
+            vectorial.finDeIdentificador(prueba, 0, 64);
+            return vectorial;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new SaltadorBytes();
+        }
+    }
+
+    // Primeiro byte que não é ' ', '\t' nem '\r' ('\n' fica para o Escaner, que conta as linhas).
+    int finDeEspacios(ByteBuffer fuente, int desde, int hasta) {
+        int i = desde;
+        while (i < hasta && esEspacio(fuente.get(i))) i++;
+        return i;
+    }
+
+    // Primeiro '\n'.
+    int finDeLinea(ByteBuffer fuente, int desde, int hasta) {
+        int i = desde;
+        while (i < hasta && fuente.get(i) != '\n') i++;
+        return i;
+    }
+
+    // Primeiro byte que não é letra ASCII, dígito nem '_'.
+    int finDeIdentificador(ByteBuffer fuente, int desde, int hasta) {
+        int i = desde;
+        while (i < hasta && esAlfanumerico(fuente.get(i))) i++;
+        return i;
+    }
+
+    static boolean esEspacio(byte c) {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+
+    static boolean esAlfanumerico(byte c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+}
@@ -0,0 +1,90 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Propósito: Interna os identificadores do programa, dando a cada nome distinto um número (símbolo) denso a partir de 0.
+ * Detalhes Chave: O Escaner consulta a tabela direto sobre os bytes do identificador na fonte, numa tabela hash de
+ * endereçamento aberto, então um nome repetido não cria String nenhuma; só a primeira ocorrência guarda os bytes e o
+ * texto do nome. As fases seguintes comparam e indexam variáveis pelo símbolo (Token.simbolo) em vez do lexema.
+ */
+public class TablaSimbolos {
+    private int[] tabla = new int[64];
+    private byte[][] bytes = new byte[32][];
+    private String[] nombres = new String[32];
+    private int[] hashes = new int[32];
+    private int tamanio = 0;
+
+    TablaSimbolos() {
+        Arrays.fill(tabla, -1);
+    }
+
+    int agregar(ByteBuffer fuente, int inicio, int longitud) {
+        int hash = 0;
+        for (int i = 0; i < longitud; i++) hash = 31 * hash + fuente.get(inicio + i);
+
+        int mascara = tabla.length - 1;
+        int posicion = hash & mascara;
+        while (true) {
+            int simbolo = tabla[posicion];
+            if (simbolo < 0) break;
+            if (hashes[simbolo] == hash && iguales(bytes[simbolo], fuente, inicio, longitud)) return simbolo;
+            posicion = (posicion + 1) & mascara;
+        }
+
+        byte[] nombre = new byte[longitud];
+        fuente.get(inicio, nombre);
+        return insertar(posicion, nombre, hash);
+    }
+
+    int agregar(byte[] nombre) {
+        return agregar(ByteBuffer.wrap(nombre), 0, nombre.length);
+    }
+
+    int tamanio() {
+        return tamanio;
+    }
+
+    String nombre(int simbolo) {
+        return nombres[simbolo];
+    }
+
+    byte[] bytes(int simbolo) {
+        return bytes[simbolo];
+    }
+
+    private int insertar(int posicion, byte[] nombre, int hash) {
+        if (tamanio == bytes.length) {
+            bytes = Arrays.copyOf(bytes, tamanio * 2);
+            nombres = Arrays.copyOf(nombres, tamanio * 2);
+            hashes = Arrays.copyOf(hashes, tamanio * 2);
+        }
+        int simbolo = tamanio++;
+        bytes[simbolo] = nombre;
+        nombres[simbolo] = new String(nombre, StandardCharsets.UTF_8);
+        hashes[simbolo] = hash;
+        tabla[posicion] = simbolo;
+        // Mantém a ocupação abaixo de metade para as sondagens continuarem curtas.
+        if (tamanio * 2 > tabla.length) redimensionar();
+        return simbolo;
+    }
+
+    private void redimensionar() {
+        tabla = new int[tabla.length * 2];
+        Arrays.fill(tabla, -1);
+        int mascara = tabla.length - 1;
+        for (int simbolo = 0; simbolo < tamanio; simbolo++) {
+            int posicion = hashes[simbolo] & mascara;
+            while (tabla[posicion] >= 0) posicion = (posicion + 1) & mascara;
+            tabla[posicion] = simbolo;
+        }
+    }
+
+    private static boolean iguales(byte[] nombre, ByteBuffer fuente, int inicio, int longitud) {
+        if (nombre.length != longitud) return false;
+        for (int i = 0; i < longitud; i++) {
+            if (nombre[i] != fuente.get(inicio + i)) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,292 @@
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Propósito: Compila um arquivo com as quatro fases (Escaner, AnalizadorSintactico, AnalizadorSemantico e
+ * GeneradorByteCode) rodando ao mesmo tempo, cada uma na sua thread, como uma linha de montagem (--tuberia).
+ * Detalhes Chave: As fases se comunicam por filas limitadas (ArrayBlockingQueue) de lotes: o Escaner entrega lotes de
+ * tokens já decodificados, o parser lotes de declarações de nível superior, e o AnalizadorSemantico lotes de
+ * declarações verificadas, que o GeneradorByteCode escreve no Fragmento. Uma fase adiantada bloqueia quando a fila
+ * seguinte está cheia, o que limita a memória em trânsito, e o tempo total tende ao da fase mais lenta em vez da soma
+ * das quatro. Os lotes amortizam o custo da sincronização.
+ * Os erros são guardados por fase (o Lox.receptor os separa pela thread que os reporta) e só vão para a saída depois,
+ * por reportarErrores(), na ordem da compilação sequencial. Uma fase que acha erro para de passar adiante o que
+ * produz, mas continua consumindo a sua fila até o fim, para não travar as anteriores. Uma exceção inesperada numa
+ * fase interrompe as demais e é relançada por compilar().
+ */
+class Tuberia {
+    static final int LEXICA = 0;
+    static final int SINTACTICA = 1;
+    static final int SEMANTICA = 2;
+
+    private static final int TOKENS_POR_LOTE = 1024;
+    private static final int SENTENCIAS_POR_LOTE = 128;
+    private static final int LOTES_EN_COLA = 16;
+
+    // Marca o fim das filas de declarações.
+    private static final List<Sentencia> FIN = new ArrayList<>();
+
+    private static class Diagnostico {
+        final int linea;
+        final String donde;
+        final String mensaje;
+
+        Diagnostico(int linea, String donde, String mensaje) {
+            this.linea = linea;
+            this.donde = donde;
+            this.mensaje = mensaje;
+        }
+    }
+
+    // Tokens consecutivos a partir do índice absoluto inicio; o lote com FIN_DE_ARCHIVO é o último.
+    private static class LoteTokens {
+        final int inicio;
+        int tamanio = 0;
+        final TokenType[] tipos = new TokenType[TOKENS_POR_LOTE];
+        final String[] lexemas = new String[TOKENS_POR_LOTE];
+        final int[] lineas = new int[TOKENS_POR_LOTE];
+        final int[] simbolos = new int[TOKENS_POR_LOTE];
+
+        LoteTokens(int inicio) {
+            this.inicio = inicio;
+        }
+
+        void agregar(TokenType tipo, String lexema, int linea, int simbolo) {
+            tipos[tamanio] = tipo;
+            lexemas[tamanio] = lexema;
+            lineas[tamanio] = linea;
+            simbolos[tamanio] = simbolo;
+            tamanio++;
+        }
+
+        boolean lleno() {
+            return tamanio == TOKENS_POR_LOTE;
+        }
+    }
+
+    // Os tokens da fila, para o parser. Guarda o lote atual e o anterior, o que basta ao parser, que só olha o token
+    // atual e o anterior.
+    private static class ColaTokens implements FuenteTokens {
+        private final BlockingQueue<LoteTokens> cola;
+        private final TablaSimbolos tabla;
+        private LoteTokens anterior = null;
+        private LoteTokens actual = new LoteTokens(0);
+
+        ColaTokens(BlockingQueue<LoteTokens> cola, TablaSimbolos tabla) {
+            this.cola = cola;
+            this.tabla = tabla;
+        }
+
+        private LoteTokens lote(int i) {
+            while (i >= actual.inicio + actual.tamanio) {
+                anterior = actual;
+                actual = tomar(cola);
+            }
+            if (i >= actual.inicio) return actual;
+            if (anterior != null && i >= anterior.inicio) return anterior;
+            throw new IllegalStateException("Token " + i + " fuera de la ventana de la tubería.");
+        }
+
+        @Override
+        public TokenType tipo(int i) {
+            LoteTokens lote = lote(i);
+            return lote.tipos[i - lote.inicio];
+        }
+
+        @Override
+        public int linea(int i) {
+            LoteTokens lote = lote(i);
+            return lote.lineas[i - lote.inicio];
+        }
+
+        @Override
+        public Object literal(int i) {
+            LoteTokens lote = lote(i);
+            return BufferTokens.literal(lote.tipos[i - lote.inicio], lote.lexemas[i - lote.inicio]);
+        }
+
+        @Override
+        public int simbolo(int i) {
+            LoteTokens lote = lote(i);
+            return lote.simbolos[i - lote.inicio];
+        }
+
+        @Override
+        public Token token(int i) {
+            LoteTokens lote = lote(i);
+            int k = i - lote.inicio;
+            return new Token(lote.tipos[k], lote.lexemas[k], BufferTokens.literal(lote.tipos[k], lote.lexemas[k]),
+                    lote.lineas[k], lote.simbolos[k]);
+        }
+
+        // A tabela é escrita pela thread do Escaner; só pode ser lida depois que a fase léxica termina.
+        @Override
+        public TablaSimbolos simbolos() {
+            return tabla;
+        }
+    }
+
+    private interface Etapa {
+        void ejecutar() throws InterruptedException;
+    }
+
+    private final FlujoTokens flujo;
+    private final BlockingQueue<LoteTokens> tokens = new ArrayBlockingQueue<>(LOTES_EN_COLA);
+    private final BlockingQueue<List<Sentencia>> analizadas = new ArrayBlockingQueue<>(LOTES_EN_COLA);
+    private final BlockingQueue<List<Sentencia>> verificadas = new ArrayBlockingQueue<>(LOTES_EN_COLA);
+    private final Fragmento fragmento = new Fragmento();
+
+    private final List<List<Diagnostico>> errores = new ArrayList<>();
+    private final ThreadLocal<List<Diagnostico>> erroresDeLaEtapa = new ThreadLocal<>();
+    private String errorDeGeneracion = null;
+    private Token finDeArchivo;
+    private int totalTokens = 0;
+
+    private Thread[] hilos;
+    private Throwable falla = null;
+
+    Tuberia(ReadableByteChannel canal) {
+        this.flujo = new FlujoTokens(canal);
+        for (int etapa = LEXICA; etapa <= SEMANTICA; etapa++) errores.add(new ArrayList<>());
+    }
+
+    // Roda as quatro fases até o fim. O Fragmento só vale se nenhuma fase teve erro.
+    Fragmento compilar() throws InterruptedException {
+        Lox.ReceptorErrores anterior = Lox.receptor;
+        Lox.receptor = (linea, donde, mensaje) -> erroresDeLaEtapa.get().add(new Diagnostico(linea, donde, mensaje));
+        try {
+            hilos = new Thread[] {
+                hilo("tuberia-lexica", errores.get(LEXICA), this::lexica),
+                hilo("tuberia-sintactica", errores.get(SINTACTICA), this::sintactica),
+                hilo("tuberia-semantica", errores.get(SEMANTICA), this::semantica),
+                hilo("tuberia-generacion", null, this::generacion),
+            };
+            for (Thread hilo : hilos) hilo.start();
+            for (Thread hilo : hilos) hilo.join();
+        } finally {
+            Lox.receptor = anterior;
+        }
+
+        if (falla instanceof RuntimeException) throw (RuntimeException) falla;
+        if (falla instanceof Error) throw (Error) falla;
+        return fragmento;
+    }
+
+    private Thread hilo(String nombre, List<Diagnostico> propios, Etapa etapa) {
+        return new Thread(() -> {
+            erroresDeLaEtapa.set(propios);
+            try {
+                etapa.ejecutar();
+            } catch (InterruptedException | CancellationException e) {
+                // Outra fase falhou e interrompeu esta.
+            } catch (Throwable e) {
+                abortar(e);
+            }
+        }, nombre);
+    }
+
+    private synchronized void abortar(Throwable e) {
+        if (falla != null) return;
+        falla = e;
+        for (Thread hilo : hilos) hilo.interrupt();
+    }
+
+    private static <T> T tomar(BlockingQueue<T> cola) {
+        try {
+            return cola.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        }
+    }
+
+    private void lexica() throws InterruptedException {
+        LoteTokens lote = new LoteTokens(0);
+        for (int i = 0; ; i++) {
+            TokenType tipo = flujo.tipo(i);
+            lote.agregar(tipo, flujo.lexema(i), flujo.linea(i), flujo.simbolo(i));
+            if (tipo == TokenType.FIN_DE_ARCHIVO) {
+                finDeArchivo = flujo.token(i);
+                totalTokens = i + 1;
+                break;
+            }
+            if (lote.lleno()) {
+                tokens.put(lote);
+                lote = new LoteTokens(i + 1);
+            }
+        }
+        tokens.put(lote);
+    }
+
+    private void sintactica() throws InterruptedException {
+        AnalizadorSintactico analizador = new AnalizadorSintactico(new ColaTokens(tokens, flujo.simbolos()));
+        List<Diagnostico> propios = errores.get(SINTACTICA);
+        List<Sentencia> lote = new ArrayList<>();
+        Sentencia sentencia;
+        while ((sentencia = analizador.siguienteSentencia()) != null) {
+            if (!propios.isEmpty()) continue;
+            lote.add(sentencia);
+            if (lote.size() == SENTENCIAS_POR_LOTE) {
+                analizadas.put(lote);
+                lote = new ArrayList<>();
+            }
+        }
+        if (!lote.isEmpty() && propios.isEmpty()) analizadas.put(lote);
+        analizadas.put(FIN);
+    }
+
+    private void semantica() throws InterruptedException {
+        AnalizadorSemantico semantico = new AnalizadorSemantico();
+        boolean valido = true;
+        for (List<Sentencia> lote = analizadas.take(); lote != FIN; lote = analizadas.take()) {
+            if (!valido) continue;
+            try {
+                for (Sentencia sentencia : lote) semantico.analizar(sentencia);
+            } catch (AnalizadorSemantico.ErrorDeTipo error) {
+                valido = false;
+                continue;
+            }
+            verificadas.put(lote);
+        }
+        verificadas.put(FIN);
+    }
+
+    private void generacion() throws InterruptedException {
+        GeneradorByteCode generador = new GeneradorByteCode(fragmento);
+        for (List<Sentencia> lote = verificadas.take(); lote != FIN; lote = verificadas.take()) {
+            if (errorDeGeneracion != null) continue;
+            try {
+                for (Sentencia sentencia : lote) generador.generar(sentencia);
+            } catch (RuntimeException e) {
+                errorDeGeneracion = String.valueOf(e.getMessage());
+            }
+        }
+        generador.terminar();
+    }
+
+    // Reporta agora, por Lox, os erros guardados da fase; true se ela teve algum.
+    boolean reportarErrores(int etapa) {
+        for (Diagnostico diagnostico : errores.get(etapa)) {
+            Lox.reportar(diagnostico.linea, diagnostico.donde, diagnostico.mensaje);
+        }
+        return !errores.get(etapa).isEmpty();
+    }
+
+    // Mensagem da exceção do GeneradorByteCode, ou null.
+    String errorDeGeneracion() {
+        return errorDeGeneracion;
+    }
+
+    // Só o FIN_DE_ARCHIVO: o arquivo não tem nenhum token.
+    boolean vacio() {
+        return totalTokens == 1;
+    }
+
+    Token finDeArchivo() {
+        return finDeArchivo;
+    }
+}
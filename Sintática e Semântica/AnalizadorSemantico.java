@@ -1,18 +1,19 @@
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Stack;
 
 /**
  * Propósito: Realiza a análise semântica da AST (verificação de tipos e escopo), implementando as interfaces
  * Expr.Visitante<Tipo> e Sentencia.Visitante<Void>.
- * Detalhes Chave: Utiliza uma pilha (ambitos) de mapas para gerenciar escopos. Implementa lógica de coerção/conversão implícita
- * (ENTERO para FLOTANTE) e valida que a condição de si e mientras seja do tipo BOOLEANO.
+ * Detalhes Chave: Os escopos são resolvidos pelo símbolo do nome (Token.simbolo) numa TablaTipos. Implementa lógica
+ * de coerção/conversão implícita (ENTERO para FLOTANTE) e valida que a condição de si e mientras seja do tipo BOOLEANO.
+ * O tipo resultante de cada expressão fica registrado em Expr.tipo para o GeneradorByteCode.
+ * analizar(ArbolPlano) aplica o mesmo visitante a cada raiz da AST plana remontada, guardando os tipos no próprio
+ * ArbolPlano. analizar(Sentencia) recebe uma declaração de nível superior por vez,
+ * mantendo o escopo global entre as chamadas.
  */
-    
+
 public class AnalizadorSemantico implements Expr.Visitante<Tipo>, Sentencia.Visitante<Void> {
 
-    private final Stack<Map<String, Tipo>> ambitos = new Stack<>();
+    private final TablaTipos tipos = new TablaTipos();
 
     static class ErrorDeTipo extends RuntimeException {
         ErrorDeTipo(Token token, String mensaje) {
@@ -22,35 +23,30 @@ public class AnalizadorSemantico implements Expr.Visitante<Tipo>, Sentencia.Visi
     }
 
     public void analizar(List<Sentencia> sentencias) {
-        iniciarAmbito();
+        tipos.iniciarAmbito();
         for (Sentencia sent : sentencias) {
             resolverSentencia(sent);
         }
-        finalizarAmbito();
-    }
-
-    private void iniciarAmbito() {
-        ambitos.push(new HashMap<String, Tipo>());
+        tipos.finalizarAmbito();
     }
 
-    private void finalizarAmbito() {
-        ambitos.pop();
-    }
-
-    private void declarar(Token nombre, Tipo tipo) {
-        if (ambitos.isEmpty()) return;
-        ambitos.peek().put(nombre.lexema, tipo);
+    // Uma declaração de nível superior por vez, no mesmo escopo global de todas as anteriores (usado pela Tuberia).
+    public void analizar(Sentencia sentencia) {
+        if (tipos.abiertos() == 0) tipos.iniciarAmbito();
+        resolverSentencia(sentencia);
     }
 
     private Tipo obtenerTipo(Token nombre) {
-        for (int i = ambitos.size() - 1; i >= 0; i--) {
-            if (ambitos.get(i).containsKey(nombre.lexema)) {
-                return ambitos.get(i).get(nombre.lexema);
-            }
-        }
+        Tipo tipo = tipos.visible(nombre.simbolo);
+        if (tipo != null) return tipo;
         throw new ErrorDeTipo(nombre, "Variable '" + nombre.lexema + "' no definida.");
     }
 
+    // Um valor do tipo valor pode ir para um destino do tipo destino: o mesmo tipo, ou ENTERO em FLOTANTE.
+    static boolean asignable(Tipo destino, Tipo valor) {
+        return destino == valor || (destino == Tipo.FLOTANTE && valor == Tipo.ENTERO);
+    }
+
     @Override
     public Void visitarSentenciaDeclaracion(Sentencia.Declaracion sent) {
         Tipo tipoDeclarado = Tipo.desdeToken(sent.tipo);
@@ -67,38 +63,36 @@ public class AnalizadorSemantico implements Expr.Visitante<Tipo>, Sentencia.Visi
             tipoDeclarado = tipoInicializador;
         }
 
-        if (tipoInicializador != Tipo.NULO && tipoDeclarado != tipoInicializador) {
-            boolean conversionImplicita = (tipoDeclarado == Tipo.FLOTANTE && tipoInicializador == Tipo.ENTERO);
-
-            if (!conversionImplicita) {
-                throw new ErrorDeTipo(sent.nombre, "Error de tipo: No se puede asignar " +
-                        tipoInicializador + " a una variable de tipo " + tipoDeclarado + ".");
-            }
+        if (tipoInicializador != Tipo.NULO && !asignable(tipoDeclarado, tipoInicializador)) {
+            throw new ErrorDeTipo(sent.nombre, "Error de tipo: No se puede asignar " +
+                    tipoInicializador + " a una variable de tipo " + tipoDeclarado + ".");
         }
 
-        declarar(sent.nombre, tipoDeclarado);
+        tipos.declarar(sent.nombre.simbolo, tipoDeclarado);
         return null;
     }
 
     @Override
     public Void visitarSentenciaBloque(Sentencia.Bloque sent) {
-        iniciarAmbito();
+        tipos.iniciarAmbito();
         for (Sentencia s : sent.sentencias) {
             resolverSentencia(s);
         }
-        finalizarAmbito();
+        tipos.finalizarAmbito();
         return null;
     }
 
     @Override
     public Tipo visitarExprLiteral(Expr.Literal expr) {
-        if (expr.valor == null) return Tipo.NULO;
-        if (expr.valor instanceof Double) {
-            if ((Double) expr.valor % 1 == 0) return Tipo.ENTERO;
-            return Tipo.FLOTANTE;
-        }
-        if (expr.valor instanceof Boolean) return Tipo.BOOLEANO;
-        if (expr.valor instanceof String) return Tipo.CADENA;
+        return tipoLiteral(expr.valor);
+    }
+
+    static Tipo tipoLiteral(Object valor) {
+        if (valor == null) return Tipo.NULO;
+        if (valor instanceof Long) return Tipo.ENTERO;
+        if (valor instanceof Double) return Tipo.FLOTANTE;
+        if (valor instanceof Boolean) return Tipo.BOOLEANO;
+        if (valor instanceof String) return Tipo.CADENA;
         return Tipo.INDEFINIDO;
     }
 
@@ -111,11 +105,17 @@ public class AnalizadorSemantico implements Expr.Visitante<Tipo>, Sentencia.Visi
     public Tipo visitarExprBinario(Expr.Binario expr) {
         Tipo izq = resolverExpresion(expr.izquierda);
         Tipo der = resolverExpresion(expr.derecha);
+        Tipo tipo = tipoBinario(expr.operador.tipo, izq, der);
+        if (tipo == null) throw new ErrorDeTipo(expr.operador, "Operación inválida entre " + izq + " y " + der);
+        return tipo;
+    }
 
+    // Tipo do resultado do operador sobre operandos dos tipos dados, ou null se a operação é inválida.
+    static Tipo tipoBinario(TokenType operador, Tipo izq, Tipo der) {
         if ((izq == Tipo.ENTERO || izq == Tipo.FLOTANTE) &&
                 (der == Tipo.ENTERO || der == Tipo.FLOTANTE)) {
 
-            switch (expr.operador.tipo) {
+            switch (operador) {
                 case MAYOR:
                 case MAYOR_IGUAL:
                 case MENOR:
@@ -133,14 +133,14 @@ public class AnalizadorSemantico implements Expr.Visitante<Tipo>, Sentencia.Visi
             }
         }
 
-        if (expr.operador.tipo == TokenType.MAS) {
+        if (operador == TokenType.MAS) {
             if (izq == Tipo.CADENA && der == Tipo.CADENA) {
                 return Tipo.CADENA;
             }
         }
 
 
-        switch (expr.operador.tipo) {
+        switch (operador) {
             case IGUAL_IGUAL:
             case EXCLAMACION_IGUAL:
                 if (izq == der) return Tipo.BOOLEANO;
@@ -149,11 +149,13 @@ public class AnalizadorSemantico implements Expr.Visitante<Tipo>, Sentencia.Visi
                 break;
         }
 
-        throw new ErrorDeTipo(expr.operador, "Operación inválida entre " + izq + " y " + der);
+        return null;
     }
 
     private Tipo resolverExpresion(Expr expr) {
-        return expr.aceptar(this);
+        Tipo tipo = expr.aceptar(this);
+        expr.tipo = tipo;
+        return tipo;
     }
 
     private void resolverSentencia(Sentencia sent) {
@@ -197,16 +199,12 @@ public class AnalizadorSemantico implements Expr.Visitante<Tipo>, Sentencia.Visi
     public Tipo visitarExprAsignar(Expr.Asignar expr) {
         Tipo tipoVariable = obtenerTipo(expr.nombre);
         Tipo tipoValor = resolverExpresion(expr.valor);
-        if (tipoVariable != tipoValor) {
-            boolean conversionImplicita = (tipoVariable == Tipo.FLOTANTE && tipoValor == Tipo.ENTERO);
-
-            if (!conversionImplicita) {
-                throw new ErrorDeTipo(expr.nombre, "Error de asignación: No se puede asignar un valor de tipo " +
-                        tipoValor + " a una variable de tipo " + tipoVariable + ".");
-            }
+        if (!asignable(tipoVariable, tipoValor)) {
+            throw new ErrorDeTipo(expr.nombre, "Error de asignación: No se puede asignar un valor de tipo " +
+                    tipoValor + " a una variable de tipo " + tipoVariable + ".");
         }
 
-        return tipoValor;
+        return tipoVariable;
     }
 
     @Override
@@ -227,6 +225,8 @@ public class AnalizadorSemantico implements Expr.Visitante<Tipo>, Sentencia.Visi
         return null;
     }
 
+    // A linguagem não tem funções: toda chamada é um erro, reportado no ')' depois de verificar o chamado e os
+    // argumentos, para que nenhum motor chegue a executá-la.
     @Override
     public Tipo visitarExprLlamada(Expr.Llamada expr) {
         resolverExpresion(expr.llamado);
@@ -234,12 +234,21 @@ public class AnalizadorSemantico implements Expr.Visitante<Tipo>, Sentencia.Visi
         for (Expr argumento : expr.argumentos) {
             resolverExpresion(argumento);
         }
-        return Tipo.NULO;
+        throw new ErrorDeTipo(expr.parentesis, "No se puede llamar a un valor: el lenguaje no tiene funciones.");
     }
 
     @Override
     public Tipo visitarExprAgrupacion(Expr.Agrupacion expr) {
         return resolverExpresion(expr.expresion);
     }
-}
 
+    // A AST plana, uma raiz remontada por vez; os tipos de cada uma voltam para o ArbolPlano.
+    public void analizar(ArbolPlano arbol) {
+        tipos.iniciarAmbito();
+        for (int i = 0; i < arbol.totalRaices(); i++) {
+            resolverSentencia(arbol.sentencia(i));
+            arbol.guardarTipos();
+        }
+        tipos.finalizarAmbito();
+    }
+}
@@ -1,22 +1,119 @@
+import java.util.ArrayList;
+import java.util.List;
+
 /**
- * Propósito: É o parser que constrói a Árvore de Sintaxe Abstrata (AST) a partir da lista de tokens.
- * Detalhes Chave: Utiliza métodos recursivos descendentes (como expresion(), igualdad(), asignacion()) que
- * correspondem à precedência de operadores. Lida com a transformação de loops 'para' (for) em 'mientras' (while).
+ * Propósito: É o parser que constrói a Árvore de Sintaxe Abstrata (AST) a partir dos tokens de uma FuenteTokens.
+ * Detalhes Chave: As sentenças usam métodos recursivos descendentes (como sentenciaSi(), bloque()); as expressões
+ * usam um analisador de precedência (Pratt) guiado pela tabela PRECEDENCIAS, indexada pelo TokenType, que trata todos
+ * os níveis de operadores num só laço. Lida com a transformação de loops 'para' (for) em 'mientras' (while).
+ * As verificações de tipo leem direto a fonte de tokens; um Token só é criado por anterior() ou ver() quando vai
+ * para a AST ou para uma mensagem de erro. Só o token atual e o anterior são consultados, o que permite ler de um
+ * FlujoTokens; siguienteSentencia() entrega a AST uma declaração por vez, e a SesionIncremental
+ * chama declaracionOSentencia() diretamente, conferindo posicion() entre uma declaração e outra.
+ * analizarParalelo() corta os tokens em trechos de declarações de nível superior e analisa os trechos ao mesmo
+ * tempo no ForkJoinPool comum, cada um por um analisador que vê o fim do trecho como o fim do arquivo e não reporta
+ * erros. Se algum trecho tem erro, a análise inteira é refeita em sequência, com os mesmos erros de analizar().
  */
+
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 class AnalizadorSintactico {
-    private static class ErrorDeAnalisis extends RuntimeException {
+    // Também lançado pelo CompiladorUnaPasada.
+    static class ErrorDeAnalisis extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    // Os tokens de [0, fin) de outra fonte, seguidos do fim do arquivo; os índices continuam absolutos.
+    private static class Tramo implements FuenteTokens {
+        private final FuenteTokens tokens;
+        private final int fin;
+
+        Tramo(FuenteTokens tokens, int fin) {
+            this.tokens = tokens;
+            this.fin = fin;
+        }
+
+        @Override
+        public TokenType tipo(int i) {
+            return i < fin ? tokens.tipo(i) : TokenType.FIN_DE_ARCHIVO;
+        }
+
+        @Override
+        public int linea(int i) {
+            return tokens.linea(i);
+        }
+
+        @Override
+        public Object literal(int i) {
+            return tokens.literal(i);
+        }
+
+        @Override
+        public int simbolo(int i) {
+            return tokens.simbolo(i);
+        }
+
+        @Override
+        public Token token(int i) {
+            return tokens.token(i);
+        }
+
+        @Override
+        public TablaSimbolos simbolos() {
+            return tokens.simbolos();
+        }
     }
 
+    // Tamanho mínimo de um trecho de analizarParalelo(), em tokens; abaixo de dois trechos a análise é sequencial.
+    private static final int TRAMO_MINIMO = 8192;
+
+
+    // Níveis de precedência dos operadores, do mais fraco ao mais forte; NINGUNA encerra a expressão. A tabela também
+    // guia o CompiladorUnaPasada.
+    static final int NINGUNA = 0;
+    static final int ASIGNACION = 1;
+    private static final int IGUALDAD = 2;
+    private static final int COMPARACION = 3;
+    private static final int TERMINO = 4;
+    private static final int FACTOR = 5;
+    static final int UNARIO = 6;
+    private static final int LLAMADA = 7;
+
+    static final int[] PRECEDENCIAS = new int[TokenType.values().length];
+
+    static {
+        PRECEDENCIAS[TokenType.IGUAL.ordinal()] = ASIGNACION;
+        PRECEDENCIAS[TokenType.EXCLAMACION_IGUAL.ordinal()] = IGUALDAD;
+        PRECEDENCIAS[TokenType.IGUAL_IGUAL.ordinal()] = IGUALDAD;
+        PRECEDENCIAS[TokenType.MAYOR.ordinal()] = COMPARACION;
+        PRECEDENCIAS[TokenType.MAYOR_IGUAL.ordinal()] = COMPARACION;
+        PRECEDENCIAS[TokenType.MENOR.ordinal()] = COMPARACION;
+        PRECEDENCIAS[TokenType.MENOR_IGUAL.ordinal()] = COMPARACION;
+        PRECEDENCIAS[TokenType.MENOS.ordinal()] = TERMINO;
+        PRECEDENCIAS[TokenType.MAS.ordinal()] = TERMINO;
+        PRECEDENCIAS[TokenType.BARRA.ordinal()] = FACTOR;
+        PRECEDENCIAS[TokenType.ASTERISCO.ordinal()] = FACTOR;
+        PRECEDENCIAS[TokenType.PARENTESIS_IZQUIERDO.ordinal()] = LLAMADA;
+    }
 
-    private final List<Token> tokens;
+    private final FuenteTokens tokens;
     private int actual = 0;
+    // Nos trechos de analizarParalelo(): os erros só marcam fallo, sem ir para Lox.error().
+    private final boolean silencioso;
+    private boolean fallo = false;
 
 
-    AnalizadorSintactico(List<Token> tokens) {
+    AnalizadorSintactico(FuenteTokens tokens) {
+        this(tokens, 0, false);
+    }
+
+    private AnalizadorSintactico(FuenteTokens tokens, int desde, boolean silencioso) {
         this.tokens = tokens;
+        this.actual = desde;
+        this.silencioso = silencioso;
     }
 
     List<Sentencia> analizar() {
@@ -27,9 +124,97 @@ class AnalizadorSintactico {
         return sentencias;
     }
 
-    private Sentencia declaracionOSentencia() {
+    // Mesmo resultado e mesmos erros que analizar(). Exige acesso aleatório aos tokens (um BufferTokens).
+    List<Sentencia> analizarParalelo() {
+        int[] cortes = cortes();
+        if (cortes.length < 3) return analizar();
+
+        List<ForkJoinTask<List<Sentencia>>> tareas = new ArrayList<>();
+        for (int k = 0; k + 1 < cortes.length; k++) {
+            int desde = cortes[k];
+            int hasta = cortes[k + 1];
+            tareas.add(ForkJoinPool.commonPool().submit(() -> analizarTramo(tokens, desde, hasta)));
+        }
+
+        List<Sentencia> sentencias = new ArrayList<>();
+        boolean valido = true;
+        for (ForkJoinTask<List<Sentencia>> tarea : tareas) {
+            List<Sentencia> tramo = tarea.join();
+            if (tramo == null) valido = false;
+            else if (valido) sentencias.addAll(tramo);
+        }
+        if (!valido) return analizar();
+        actual = cortes[cortes.length - 1];
+        return sentencias;
+    }
+
+    // Inícios dos trechos, mais o índice do FIN_DE_ARCHIVO. Um trecho só termina num ';' ou '}' fora de parênteses e
+    // chaves que não é seguido por 'sino', onde uma declaração de nível superior sem erro sempre termina.
+    private int[] cortes() {
+        int total = 0;
+        while (tokens.tipo(total) != TokenType.FIN_DE_ARCHIVO) total++;
+        int tamanio = Math.max(TRAMO_MINIMO, total / (ForkJoinPool.getCommonPoolParallelism() * 4));
+        if (total < 2 * tamanio) return new int[] { 0, total };
+
+        List<Integer> cortes = new ArrayList<>();
+        cortes.add(0);
+        int ultimo = 0;
+        int parentesis = 0;
+        int llaves = 0;
+        for (int i = 0; i < total; i++) {
+            TokenType tipo = tokens.tipo(i);
+            if (tipo == TokenType.PARENTESIS_IZQUIERDO) parentesis++;
+            else if (tipo == TokenType.PARENTESIS_DERECHO) parentesis--;
+            else if (tipo == TokenType.LLAVE_IZQUIERDA) llaves++;
+            else if (tipo == TokenType.LLAVE_DERECHA) llaves--;
+
+            if (tipo != TokenType.PUNTO_Y_COMA && tipo != TokenType.LLAVE_DERECHA) continue;
+            if (parentesis != 0 || llaves != 0) continue;
+            if (i + 1 - ultimo < tamanio || total - (i + 1) < tamanio) continue;
+            if (tokens.tipo(i + 1) == TokenType.SINO) continue;
+            ultimo = i + 1;
+            cortes.add(ultimo);
+        }
+        cortes.add(total);
+
+        int[] resultado = new int[cortes.size()];
+        for (int k = 0; k < resultado.length; k++) resultado[k] = cortes.get(k);
+        return resultado;
+    }
+
+    // Declarações de [desde, hasta), ou null se o trecho tem algum erro de sintaxe.
+    private static List<Sentencia> analizarTramo(FuenteTokens tokens, int desde, int hasta) {
+        AnalizadorSintactico analizador = new AnalizadorSintactico(new Tramo(tokens, hasta), desde, true);
+        List<Sentencia> sentencias = new ArrayList<>();
+        while (!analizador.esFin()) {
+            sentencias.add(analizador.declaracionOSentencia());
+            if (analizador.fallo) return null;
+        }
+        return sentencias;
+    }
+
+    // Próxima declaração de nível superior, ou null no fim dos tokens. Declarações com erro de sintaxe são puladas.
+    Sentencia siguienteSentencia() {
+        while (!esFin()) {
+            Sentencia sentencia = declaracionOSentencia();
+            if (sentencia != null) return sentencia;
+        }
+        return null;
+    }
+
+    // Índice do próximo token a consumir e fim dos tokens, para quem percorre as declarações uma a uma.
+    int posicion() {
+        return actual;
+    }
+
+    boolean terminado() {
+        return esFin();
+    }
+
+    // Uma declaração de nível superior; null se ela tem erro de sintaxe (os tokens dela são consumidos mesmo assim).
+    Sentencia declaracionOSentencia() {
         try {
-            if (coincidir(TokenType.VAR, TokenType.ENTERO, TokenType.FLOTANTE, TokenType.BOOLEANO, TokenType.CADENA)) {
+            if (coincidirTipo()) {
                 return declaracionDeTipo();
             }
             if (coincidir(TokenType.IMPRIMIR)) return sentenciaImprimir();
@@ -48,7 +233,8 @@ class AnalizadorSintactico {
     private Sentencia declaracionDeTipo() {
 
         Token tipo = anterior();
-        Token nombre = consumir(TokenType.IDENTIFICADOR, "Se esperaba un nombre de variable.");
+        consumir(TokenType.IDENTIFICADOR, "Se esperaba un nombre de variable.");
+        Token nombre = anterior();
 
         Expr inicializador = null;
         if (coincidir(TokenType.IGUAL)) {
@@ -60,7 +246,7 @@ class AnalizadorSintactico {
     }
 
     private Sentencia sentencia() {
-        if (coincidir(TokenType.VAR, TokenType.ENTERO, TokenType.FLOTANTE, TokenType.BOOLEANO, TokenType.CADENA)) {
+        if (coincidirTipo()) {
             return declaracionDeTipo();
         }
         if (coincidir(TokenType.IMPRIMIR)) return sentenciaImprimir();
@@ -110,7 +296,7 @@ class AnalizadorSintactico {
         Sentencia inicializador;
         if (coincidir(TokenType.PUNTO_Y_COMA)) {
             inicializador = null;
-        } else if (coincidir(TokenType.VAR, TokenType.ENTERO, TokenType.FLOTANTE, TokenType.BOOLEANO, TokenType.CADENA)) {
+        } else if (coincidirTipo()) {
             inicializador = declaracionDeTipo();
         } else {
             inicializador = sentenciaDeExpresion();
@@ -163,85 +349,46 @@ class AnalizadorSintactico {
 
 
     private Expr expresion() {
-        return asignacion();
+        return expresion(ASIGNACION);
     }
 
-    private Expr asignacion() {
-        Expr expr = igualdad();
-        if (coincidir(TokenType.IGUAL)) {
-            Token igual = anterior();
-            Expr valor = asignacion();
-            if (expr instanceof Expr.Variable) {
-                Token nombre = ((Expr.Variable) expr).nombre;
-                return new Expr.Asignar(nombre, valor);
-            }
-            error(igual, "Destino de asignación inválido.");
-        }
-        return expr;
-    }
-
-    private Expr igualdad() {
-        Expr expr = comparacion();
-        while (coincidir(TokenType.EXCLAMACION_IGUAL, TokenType.IGUAL_IGUAL)) {
-            Token operador = anterior();
-            Expr derecha = comparacion();
-            expr = new Expr.Binario(expr, operador, derecha);
-        }
-        return expr;
-    }
-
-    private Expr comparacion() {
-        Expr expr = termino();
-        while (coincidir(TokenType.MAYOR, TokenType.MAYOR_IGUAL, TokenType.MENOR, TokenType.MENOR_IGUAL)) {
-            Token operador = anterior();
-            Expr derecha = termino();
-            expr = new Expr.Binario(expr, operador, derecha);
-        }
-        return expr;
-    }
-
-    private Expr termino() {
-        Expr expr = factor();
-        while (coincidir(TokenType.MENOS, TokenType.MAS)) {
-            Token operador = anterior();
-            Expr derecha = factor();
-            expr = new Expr.Binario(expr, operador, derecha);
-        }
-        return expr;
-    }
-
-    private Expr factor() {
-        Expr expr = unario();
-
-        while (coincidir(TokenType.BARRA, TokenType.ASTERISCO)) {
-            Token operador = anterior();
-            Expr derecha = unario();
-            expr = new Expr.Binario(expr, operador, derecha);
-        }
-        return expr;
-    }
-
-    private Expr unario() {
-
-        if (coincidir(TokenType.EXCLAMACION, TokenType.MENOS)) {
+    // Analisador de precedência (Pratt): depois do operando inicial, consome os operadores cuja precedência na
+    // tabela é ao menos minima. Os binários são associativos à esquerda (o operando direito exige um nível acima), a
+    // atribuição à direita, e a chamada é um operador pós-fixo do nível mais alto.
+    private Expr expresion(int minima) {
+        Expr expr;
+        TokenType tipo = tokens.tipo(actual);
+        if (tipo == TokenType.EXCLAMACION || tipo == TokenType.MENOS) {
+            avanzar();
             Token operador = anterior();
-            Expr derecha = unario();
-            return new Expr.Unario(operador, derecha);
+            expr = new Expr.Unario(operador, expresion(UNARIO));
+        } else {
+            expr = primario();
         }
-        return llamada();
-    }
 
-    private Expr llamada() {
-        Expr expr = primario();
         while (true) {
+            tipo = tokens.tipo(actual);
+            int precedencia = PRECEDENCIAS[tipo.ordinal()];
+            if (precedencia < minima || precedencia == NINGUNA) return expr;
+            avanzar();
 
-            if (coincidir(TokenType.PARENTESIS_IZQUIERDO)) {
+            if (tipo == TokenType.PARENTESIS_IZQUIERDO) {
                 expr = finalizarLlamada(expr);
+            } else if (tipo == TokenType.IGUAL) {
+                Token igual = anterior();
+                Expr valor = expresion(ASIGNACION);
+                if (expr instanceof Expr.Variable) {
+                    Token nombre = ((Expr.Variable) expr).nombre;
+                    return new Expr.Asignar(nombre, valor);
+                }
+                error(igual, "Destino de asignación inválido.");
+                return expr;
             } else {
-                break;
+                Token operador = anterior();
+                Expr derecha = expresion(precedencia + 1);
+                expr = new Expr.Binario(expr, operador, derecha);
             }
         }
-        return expr;
     }
 
     private Expr finalizarLlamada(Expr callee) {
@@ -256,47 +403,86 @@ class AnalizadorSintactico {
             } while (coincidir(TokenType.COMA));
         }
 
-        Token parentesis = consumir(TokenType.PARENTESIS_DERECHO, "Se esperaba ')' después de los argumentos.");
+        consumir(TokenType.PARENTESIS_DERECHO, "Se esperaba ')' después de los argumentos.");
+        Token parentesis = anterior();
         return new Expr.Llamada(callee, parentesis, argumentos);
     }
 
     private Expr primario() {
-
-        if (coincidir(TokenType.FALSO)) return new Expr.Literal(false);
-        if (coincidir(TokenType.VERDADERO)) return new Expr.Literal(true);
-        if (coincidir(TokenType.NULO)) return new Expr.Literal(null);
-        if (coincidir(TokenType.NUMERO, TokenType.CADENA)) {
-            return new Expr.Literal(anterior().literal);
+        switch (tokens.tipo(actual)) {
+            case FALSO:
+                avanzar();
+                return new Expr.Literal(false);
+            case VERDADERO:
+                avanzar();
+                return new Expr.Literal(true);
+            case NULO:
+                avanzar();
+                return new Expr.Literal(null);
+            case NUMERO:
+            case CADENA:
+                avanzar();
+                return new Expr.Literal(tokens.literal(actual - 1));
+            case IDENTIFICADOR:
+                avanzar();
+                return new Expr.Variable(anterior());
+            case PARENTESIS_IZQUIERDO:
+                avanzar();
+                Expr expr = expresion();
+                consumir(TokenType.PARENTESIS_DERECHO, "Se esperaba ')' después de la expresión.");
+                return new Expr.Agrupacion(expr);
+            default:
+                throw error(ver(), "Se esperaba una expresión.");
         }
-        if (coincidir(TokenType.IDENTIFICADOR)) {
-            return new Expr.Variable(anterior());
+    }
+
+    // AST plana (--ast-plana): as mesmas declarações de analizar(), cada uma achatada no ArbolPlano assim que é
+    // analisada, sem guardar a lista de objetos. Declarações com erro não entram na árvore.
+    ArbolPlano analizarPlano() {
+        ArbolPlano arbol = new ArbolPlano(tokens.simbolos());
+        while (!esFin()) {
+            Sentencia sentencia = declaracionOSentencia();
+            if (sentencia != null) arbol.agregarRaiz(sentencia);
         }
-        if (coincidir(TokenType.PARENTESIS_IZQUIERDO)) {
-            Expr expr = expresion();
-            consumir(TokenType.PARENTESIS_DERECHO, "Se esperaba ')' después de la expresión.");
-            return new Expr.Agrupacion(expr);
+        arbol.compactar();
+        return arbol;
+    }
+
+    private boolean coincidir(TokenType tipo) {
+        if (verificar(tipo)) {
+            avanzar();
+            return true;
         }
-        throw error(ver(), "Se esperaba una expresión.");
+        return false;
     }
 
-    private boolean coincidir(TokenType... tipos) {
-        for (TokenType tipo : tipos) {
-            if (verificar(tipo)) {
+    // Palavras que começam uma declaração de variável.
+    private boolean coincidirTipo() {
+        switch (tokens.tipo(actual)) {
+            case VAR:
+            case ENTERO:
+            case FLOTANTE:
+            case BOOLEANO:
+            case CADENA:
                 avanzar();
                 return true;
-            }
+            default:
+                return false;
         }
-        return false;
     }
 
 
-    private Token consumir(TokenType tipo, String mensaje) {
-        if (verificar(tipo)) return avanzar();
+    private void consumir(TokenType tipo, String mensaje) {
+        if (verificar(tipo)) {
+            avanzar();
+            return;
+        }
         throw error(ver(), mensaje);
     }
 
     private ErrorDeAnalisis error(Token token, String mensaje) {
-        Lox.error(token, mensaje);
+        if (silencioso) fallo = true;
+        else Lox.error(token, mensaje);
         return new ErrorDeAnalisis();
     }
 
@@ -304,8 +490,8 @@ class AnalizadorSintactico {
         avanzar();
         while (!esFin()) {
 
-            if (anterior().tipo == TokenType.PUNTO_Y_COMA) return;
-            switch (ver().tipo) {
+            if (tokens.tipo(actual - 1) == TokenType.PUNTO_Y_COMA) return;
+            switch (tokens.tipo(actual)) {
 
                 case ENTERO:
                 case FLOTANTE:
@@ -328,27 +514,28 @@ class AnalizadorSintactico {
 
     private boolean verificar(TokenType tipo) {
         if (esFin()) return false;
-        return ver().tipo == tipo;
+        return tokens.tipo(actual) == tipo;
     }
 
 
-    private Token avanzar() {
+    private void avanzar() {
         if (!esFin()) actual++;
-        return anterior();
     }
 
     private boolean esFin() {
 
-        return ver().tipo == TokenType.FIN_DE_ARCHIVO;
+        return tokens.tipo(actual) == TokenType.FIN_DE_ARCHIVO;
     }
 
 
     private Token ver() {
-        return tokens.get(actual);
+        return tokens.token(actual);
     }
 
 
     private Token anterior() {
-        return tokens.get(actual - 1);
+        return tokens.token(actual - 1);
     }
 }
+
+
@@ -4,6 +4,7 @@ import java.util.List;
  * Propósito: Classe abstrata que serve como base para todas as Expressões na Árvore de Sintaxe Abstrata (AST).
  * Detalhes Chave: Implementa o padrão Visitor através da interface aninhada Visitante<R> e o método aceptar.
  * Contém classes aninhadas para diferentes tipos de expressões, como Binario, Literal, Variable, e Asignar.
+ * O campo tipo é preenchido pelo AnalizadorSemantico e usado pelo GeneradorByteCode para escolher instruções tipadas.
  */
 
 abstract class Expr {
@@ -125,6 +126,8 @@ abstract class Expr {
         final Token nombre;
     }
 
+    Tipo tipo;
+
     abstract <R> R aceptar(Visitante<R> visitante);
 
 }
@@ -0,0 +1,55 @@
+import java.util.Arrays;
+
+/**
+ * Propósito: Tabela dos tipos das variáveis visíveis, por símbolo, com escopos aninhados; usada pelo
+ * AnalizadorSemantico e pelo CompiladorUnaPasada.
+ * Detalhes Chave: visibles guarda o tipo visível de cada símbolo, e cada declaração anota o tipo que escondeu para
+ * que finalizarAmbito() o restaure. ambitos guarda, para cada escopo aberto, quantas declarações havia quando ele
+ * começou.
+ */
+class TablaTipos {
+    private Tipo[] visibles = new Tipo[64];
+    // Símbolos declarados, em ordem, com o tipo que cada declaração escondeu.
+    private int[] declarados = new int[64];
+    private Tipo[] ocultos = new Tipo[64];
+    private int totalDeclarados = 0;
+    private int[] ambitos = new int[16];
+    private int totalAmbitos = 0;
+
+    void iniciarAmbito() {
+        if (totalAmbitos == ambitos.length) ambitos = Arrays.copyOf(ambitos, totalAmbitos * 2);
+        ambitos[totalAmbitos++] = totalDeclarados;
+    }
+
+    void finalizarAmbito() {
+        int inicio = ambitos[--totalAmbitos];
+        while (totalDeclarados > inicio) {
+            totalDeclarados--;
+            visibles[declarados[totalDeclarados]] = ocultos[totalDeclarados];
+        }
+    }
+
+    // Escopos abertos; o primeiro é o global.
+    int abiertos() {
+        return totalAmbitos;
+    }
+
+    // Sem escopo aberto a declaração é ignorada.
+    void declarar(int simbolo, Tipo tipo) {
+        if (totalAmbitos == 0) return;
+        if (simbolo >= visibles.length) visibles = Arrays.copyOf(visibles, Math.max(simbolo + 1, visibles.length * 2));
+        if (totalDeclarados == declarados.length) {
+            declarados = Arrays.copyOf(declarados, totalDeclarados * 2);
+            ocultos = Arrays.copyOf(ocultos, totalDeclarados * 2);
+        }
+        declarados[totalDeclarados] = simbolo;
+        ocultos[totalDeclarados] = visibles[simbolo];
+        totalDeclarados++;
+        visibles[simbolo] = tipo;
+    }
+
+    // O tipo do símbolo no escopo atual, ou null se ele não foi declarado.
+    Tipo visible(int simbolo) {
+        return simbolo < visibles.length ? visibles[simbolo] : null;
+    }
+}